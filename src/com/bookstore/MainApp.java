@@ -2,11 +2,15 @@
 package com.bookstore;
 
 import com.bookstore.util.DataStore;
+import com.bookstore.util.Threads;
 import com.bookstore.view.LoginView;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Main entry point for the JavaFX bookstore application.
  */
@@ -15,29 +19,53 @@ public class MainApp extends Application {
     private static final int WIDTH = 800;
     private static final int HEIGHT = 600;
     
+    // Completes once the data store has loaded; until then there is nothing to save
+    private static final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    
     /**
-     * Main method that launches the JavaFX application.
+     * Main method that launches the JavaFX application. The data store
+     * loads in the background while the window opens.
      */
     public static void main(String[] args) {
         // Initialize data store
         DataStore dataStore = DataStore.getInstance();
-        dataStore.loadData();
+        Threads.background().execute(() -> {
+            try {
+                dataStore.loadData();
+                loaded.complete(null);
+            } catch (RuntimeException e) {
+                loaded.completeExceptionally(e);
+                throw e;
+            }
+        });
         
         // Register shutdown hook to save data when the application closes
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            System.out.println("Saving data...");
-            dataStore.saveData();
+            if (isLoaded()) {
+                System.out.println("Saving data...");
+                dataStore.saveData();
+            }
         }));
         
         launch(args);
     }
     
+    /**
+     * Checks whether the data store finished loading. Saving a store that
+     * did not would overwrite the data files with whatever had been read.
+     */
+    private static boolean isLoaded() {
+        return loaded.isDone() && !loaded.isCompletedExceptionally();
+    }
+    
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("BookStore Management System");
         
         // Set initial view to login screen
         LoginView loginView = new LoginView(primaryStage);
+        loginView.setLoading(!loaded.isDone());
+        loaded.whenComplete((result, error) -> Platform.runLater(() -> loginView.setLoading(false)));
         Scene scene = new Scene(loginView, WIDTH, HEIGHT);
         
         primaryStage.setScene(scene);
@@ -48,6 +76,8 @@ public class MainApp extends Application {
     @Override
     public void stop() {
         // Ensure data is saved when application closes
-        DataStore.getInstance().saveData();
+        if (isLoaded()) {
+            DataStore.getInstance().saveData();
+        }
     }
 }
@@ -0,0 +1,147 @@
+package com.bookstore.bench;
+
+import com.bookstore.model.Customer;
+import com.bookstore.model.Money;
+import com.bookstore.model.Purchase;
+import com.bookstore.util.FileIO;
+import com.bookstore.util.StringPool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures customers.txt load throughput of the line/split parser the
+ * application used to have against the byte-level parser in FileIO, both
+ * through a read buffer, through memory mappings and split across all cores,
+ * and finally with repeated values interned in a StringPool.
+ *
+ * Usage: java -Xmx16g com.bookstore.bench.LoadBenchmark [directory] [sizeMB]
+ *
+ * A customers.txt of roughly the requested size is generated in the
+ * directory unless one is already there.
+ */
+public class LoadBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "bench-data");
+        long sizeMB = args.length > 1 ? Long.parseLong(args[1]) : 1024;
+
+        Path customersFile = directory.resolve("customers.txt");
+        if (!Files.exists(customersFile)) {
+            System.out.println("Generating " + sizeMB + " MB of customers in " + directory);
+            generateCustomers(customersFile, sizeMB << 20);
+        }
+        double megabytes = Files.size(customersFile) / (double) (1 << 20);
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int legacy = loadCustomersLegacy(customersFile).size();
+            double legacySeconds = (System.nanoTime() - start) / 1e9;
+
+            FileIO fileIO = new FileIO(directory.toString());
+            start = System.nanoTime();
+            int scanned = fileIO.loadCustomers().size();
+            double scannedSeconds = (System.nanoTime() - start) / 1e9;
+
+            fileIO.setMemoryMapped(true);
+            start = System.nanoTime();
+            int mapped = fileIO.loadCustomers().size();
+            double mappedSeconds = (System.nanoTime() - start) / 1e9;
+
+            fileIO.setLoadParallelism(threads);
+            start = System.nanoTime();
+            int parallel = fileIO.loadCustomers().size();
+            double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("round %d: readLine/split %.1f MB/s (%d customers), byte scanner %.1f MB/s (%d customers), "
+                            + "mapped %.1f MB/s (%d customers), mapped on %d threads %.1f MB/s (%d customers)%n",
+                    round, megabytes / legacySeconds, legacy, megabytes / scannedSeconds, scanned,
+                    megabytes / mappedSeconds, mapped, threads, megabytes / parallelSeconds, parallel);
+
+            StringPool pool = new StringPool();
+            fileIO.setStringPool(pool);
+            start = System.nanoTime();
+            int pooled = fileIO.loadCustomers().size();
+            double pooledSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("round %d: pooled on %d threads %.1f MB/s (%d customers), %s, %.1f MB saved%n",
+                    round, threads, megabytes / pooledSeconds, pooled, pool, pool.getBytesSaved() / (double) (1 << 20));
+        }
+    }
+
+    /**
+     * Writes customers with ten purchases each until the file reaches the target size.
+     */
+    static void generateCustomers(Path file, long targetBytes) throws IOException {
+        Files.createDirectories(file.getParent());
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; written < targetBytes; i++) {
+                StringBuilder record = new StringBuilder(1024);
+                record.append("CUSTOMER:").append(UUID.randomUUID()).append(",user").append(i)
+                        .append(",Customer ").append(i).append('\n');
+                record.append("PASSWORD:secret").append(i).append('\n');
+                for (int p = 0; p < 10; p++) {
+                    int book = (i * 31 + p) % 5000;
+                    record.append("PURCHASE:").append(UUID.randomUUID()).append(",book").append(book)
+                            .append(",Title of book ").append(book).append(',').append(1 + p % 3)
+                            .append(',').append(10 + book % 40).append('.').append(10 + p * 7)
+                            .append(",2024-03-").append(10 + p).append('\n');
+                }
+                writer.write(record.toString());
+                written += record.length();
+            }
+        }
+    }
+
+    /**
+     * The readLine/split/parseDouble loader FileIO used before the byte scanner.
+     */
+    static List<Customer> loadCustomersLegacy(Path file) throws IOException {
+        List<Customer> customers = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            Customer currentCustomer = null;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("CUSTOMER:")) {
+                    if (currentCustomer != null) {
+                        customers.add(currentCustomer);
+                    }
+
+                    String[] parts = line.substring(9).split(",");
+                    if (parts.length == 3) {
+                        currentCustomer = new Customer();
+                        currentCustomer.setId(parts[0]);
+                        currentCustomer.setUsername(parts[1]);
+                        currentCustomer.setName(parts[2]);
+                    }
+                } else if (line.startsWith("PASSWORD:") && currentCustomer != null) {
+                    currentCustomer.setPassword(line.substring(9));
+                } else if (line.startsWith("PURCHASE:") && currentCustomer != null) {
+                    String[] parts = line.substring(9).split(",");
+                    if (parts.length == 6) {
+                        currentCustomer.addPurchase(new Purchase(parts[0], parts[1], parts[2],
+                                Integer.parseInt(parts[3]), Money.fromDouble(Double.parseDouble(parts[4])), parts[5]));
+                    }
+                }
+            }
+
+            if (currentCustomer != null) {
+                customers.add(currentCustomer);
+            }
+        }
+
+        return customers;
+    }
+}
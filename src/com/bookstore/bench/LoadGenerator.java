@@ -0,0 +1,190 @@
+package com.bookstore.bench;
+
+import com.bookstore.util.Threads;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives the HTTP API with many concurrent shoppers and reports requests
+ * per second and latency percentiles. Each shopper loops over a mix of
+ * browsing a page of books, searching, and, when credentials are given,
+ * reading their account, each request waiting for the previous one. With
+ * credentials each shopper logs in once and sends its session token. The
+ * first fifth of the run warms the server up and is not measured.
+ *
+ * Usage: java com.bookstore.bench.LoadGenerator [baseUrl] [shoppers] [seconds] [username password]
+ */
+public class LoadGenerator {
+    private static final String[] SEARCH_TERMS = {"the", "book", "mock", "great", "war", "title", "pride", "19"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int shoppers = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String credentials = args.length > 4 ? "Basic " + Base64.getEncoder().encodeToString(
+                (args[3] + ":" + args[4]).getBytes(StandardCharsets.UTF_8)) : null;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Threads.newTaskExecutor("load-client"))
+                .build();
+        int books = bookCount(client, baseUrl);
+
+        long start = System.nanoTime();
+        long measureFrom = start + seconds * 200_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        ExecutorService executor = Threads.newTaskExecutor("shopper");
+        List<Future<Shopper>> results = new ArrayList<>(shoppers);
+        for (int i = 0; i < shoppers; i++) {
+            String authorization = credentials != null ? "Bearer " + login(client, baseUrl, credentials) : null;
+            Shopper shopper = new Shopper(client, baseUrl, authorization, books);
+            results.add(executor.submit(() -> shopper.run(measureFrom, end)));
+        }
+
+        long requests = 0;
+        long errors = 0;
+        List<long[]> latencies = new ArrayList<>(shoppers);
+        for (Future<Shopper> result : results) {
+            Shopper shopper = result.get();
+            requests += shopper.count;
+            errors += shopper.errors;
+            latencies.add(Arrays.copyOf(shopper.latencies, shopper.count));
+        }
+        executor.shutdown();
+
+        long[] all = new long[(int) requests];
+        int position = 0;
+        for (long[] part : latencies) {
+            System.arraycopy(part, 0, all, position, part.length);
+            position += part.length;
+        }
+        Arrays.sort(all);
+        double measured = (end - measureFrom) / 1e9;
+        System.out.printf("%d shoppers, %.0f requests/s, %d errors%n", shoppers, requests / measured, errors);
+        System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                all.length > 0 ? all[all.length - 1] / 1e6 : 0.0);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)] / 1e6;
+    }
+
+    /**
+     * Reads the number of books from the first page, so shoppers can browse
+     * every page.
+     */
+    private static int bookCount(HttpClient client, String baseUrl) throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/books?limit=1")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+        int total = body.indexOf("\"total\":");
+        if (response.statusCode() != 200 || total < 0) {
+            throw new IllegalStateException("Unexpected response from " + baseUrl + ": " + response.statusCode());
+        }
+        int from = total + "\"total\":".length();
+        int to = from;
+        while (to < body.length() && Character.isDigit(body.charAt(to))) {
+            to++;
+        }
+        return Integer.parseInt(body.substring(from, to));
+    }
+
+    /**
+     * Opens a session with Basic credentials and returns its token.
+     */
+    private static String login(HttpClient client, String baseUrl, String credentials) throws Exception {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/login"))
+                        .header("Authorization", credentials)
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+        int token = body.indexOf("\"token\":\"");
+        if (response.statusCode() != 200 || token < 0) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + body);
+        }
+        int from = token + "\"token\":\"".length();
+        return body.substring(from, body.indexOf('"', from));
+    }
+
+    private static class Shopper {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final String authorization;
+        private final int books;
+        long[] latencies = new long[1024];
+        int count;
+        long errors;
+
+        Shopper(HttpClient client, String baseUrl, String authorization, int books) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.authorization = authorization;
+            this.books = books;
+        }
+
+        Shopper run(long measureFrom, long end) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                HttpRequest request = nextRequest(random);
+                boolean failed;
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    failed = response.statusCode() >= 400;
+                } catch (Exception e) {
+                    failed = true;
+                }
+                long finished = System.nanoTime();
+                if (now >= measureFrom) {
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = finished - now;
+                    if (failed) {
+                        errors++;
+                    }
+                }
+            }
+            return this;
+        }
+
+        private HttpRequest nextRequest(ThreadLocalRandom random) {
+            int kind = random.nextInt(10);
+            String path;
+            if (kind < 6 || books == 0) {
+                path = "/api/books?offset=" + random.nextInt(Math.max(books, 1)) + "&limit=20";
+            } else if (kind < 9 || authorization == null) {
+                String term = SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)];
+                path = "/api/books?q=" + URLEncoder.encode(term, StandardCharsets.UTF_8) + "&limit=20";
+            } else {
+                path = "/api/account";
+            }
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30));
+            if (authorization != null) {
+                request.header("Authorization", authorization);
+            }
+            return request.build();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.bookstore.bench;
+
+import com.bookstore.util.CredentialVerifier;
+import com.bookstore.util.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures logins per second through CredentialVerifier at several PBKDF2
+ * work factors, with many concurrent clients logging in as a few users:
+ * every login hashed, repeated logins answered by the verified cache, and
+ * a hashing queue too short for the clients, where the excess is refused
+ * instead of waiting.
+ *
+ * Usage: java com.bookstore.bench.PasswordBenchmark [clients] [seconds]
+ */
+public class PasswordBenchmark {
+    private static final int[] WORK_FACTORS = {10_000, 30_000, PasswordHasher.DEFAULT_ITERATIONS, 310_000};
+    private static final int USERS = 16;
+    private static final int BACKOFF_MILLIS = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int threads = Runtime.getRuntime().availableProcessors();
+        // Warm the hashing code up so the first work factor is not charged for compiling it
+        PasswordHasher.hash("warmup", WORK_FACTORS[WORK_FACTORS.length - 1]);
+
+        for (int iterations : WORK_FACTORS) {
+            String[] stored = new String[USERS];
+            long start = System.nanoTime();
+            for (int i = 0; i < USERS; i++) {
+                stored[i] = PasswordHasher.hash("secret" + i, iterations);
+            }
+            System.out.printf("%d iterations: %.1f ms per hash%n", iterations,
+                    (System.nanoTime() - start) / 1e6 / USERS);
+
+            report("hashed", clients, seconds, stored,
+                    new CredentialVerifier(iterations, threads, clients, 0, 0));
+            report("cached", clients, seconds, stored,
+                    new CredentialVerifier(iterations, threads, clients, 60_000, USERS));
+            report("short queue", clients, seconds, stored,
+                    new CredentialVerifier(iterations, threads, threads, 0, 0));
+        }
+    }
+
+    private static void report(String name, int clients, int seconds, String[] stored, CredentialVerifier verifier)
+            throws InterruptedException {
+        AtomicLong logins = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        AtomicLong wrong = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int first = c;
+            Thread thread = new Thread(() -> {
+                for (int i = first; System.nanoTime() < end; i++) {
+                    int user = i % USERS;
+                    try {
+                        if (verifier.verify("user" + user, "secret" + user, stored[user])) {
+                            logins.incrementAndGet();
+                        } else {
+                            wrong.incrementAndGet();
+                        }
+                    } catch (RejectedExecutionException e) {
+                        refused.incrementAndGet();
+                        // A real client would back off before retrying
+                        try {
+                            Thread.sleep(BACKOFF_MILLIS);
+                        } catch (InterruptedException interrupted) {
+                            return;
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        verifier.shutdown();
+        System.out.printf("  %s: %d clients, %.0f logins/s, %.0f refused/s%s%n", name, clients,
+                logins.get() / elapsed, refused.get() / elapsed, wrong.get() == 0 ? "" : " (WRONG)");
+    }
+}
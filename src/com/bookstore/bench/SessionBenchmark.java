@@ -0,0 +1,73 @@
+package com.bookstore.bench;
+
+import com.bookstore.model.Session;
+import com.bookstore.model.User;
+import com.bookstore.util.SessionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures login churn on SessionManager with many concurrent users, each
+ * opening a session, reading it a few times and logging out, except that
+ * every tenth session is abandoned. It then waits out the idle timeout and
+ * checks the abandoned sessions were all reclaimed.
+ *
+ * Usage: java com.bookstore.bench.SessionBenchmark [threads] [seconds]
+ */
+public class SessionBenchmark {
+    private static final int READS_PER_SESSION = 4;
+    private static final int IDLE_TIMEOUT_SECONDS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        try (SessionManager sessions = new SessionManager(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            User user = new User("shopper", "secret", User.UserRole.CUSTOMER);
+            AtomicLong cycles = new AtomicLong();
+            AtomicLong lost = new AtomicLong();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> users = new ArrayList<>(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                Thread thread = new Thread(() -> {
+                    long count = 0;
+                    while (System.nanoTime() < end) {
+                        Session session = new Session();
+                        session.setCurrentUser(user);
+                        String token = sessions.open(session);
+                        for (int i = 0; i < READS_PER_SESSION; i++) {
+                            if (sessions.get(token) != session) {
+                                lost.incrementAndGet();
+                            }
+                        }
+                        if (++count % 10 != 0) {
+                            sessions.close(token);
+                        }
+                    }
+                    cycles.addAndGet(count);
+                });
+                users.add(thread);
+                thread.start();
+            }
+            for (Thread thread : users) {
+                thread.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d users, %.0f K logins/s, %.0f K reads/s, %d lost reads, %d sessions open%n",
+                    threads, cycles.get() / elapsed / 1e3, cycles.get() * READS_PER_SESSION / elapsed / 1e3,
+                    lost.get(), sessions.size());
+
+            long waitStart = System.nanoTime();
+            long waitEnd = waitStart + TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS * 3);
+            while (sessions.size() > 0 && System.nanoTime() < waitEnd) {
+                Thread.sleep(50);
+            }
+            System.out.printf("%d sessions left %.1f s later%s; %s%n", sessions.size(),
+                    (System.nanoTime() - waitStart) / 1e9, sessions.size() == 0 ? "" : " (WRONG)", sessions);
+        }
+    }
+}
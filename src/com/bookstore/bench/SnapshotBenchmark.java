@@ -0,0 +1,54 @@
+package com.bookstore.bench;
+
+import com.bookstore.util.FileIO;
+import com.bookstore.util.SnapshotConverter;
+import com.bookstore.util.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compares startup load time of the text data files with the binary snapshot.
+ *
+ * Usage: java -Xmx16g com.bookstore.bench.SnapshotBenchmark [directory] [sizeMB]
+ *
+ * Uses the same generated customers.txt as LoadBenchmark.
+ */
+public class SnapshotBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "bench-data");
+        long sizeMB = args.length > 1 ? Long.parseLong(args[1]) : 1024;
+
+        Path customersFile = directory.resolve("customers.txt");
+        if (!Files.exists(customersFile)) {
+            System.out.println("Generating " + sizeMB + " MB of customers in " + directory);
+            LoadBenchmark.generateCustomers(customersFile, sizeMB << 20);
+        }
+        if (!Files.exists(directory.resolve("books.txt"))) {
+            Files.createFile(directory.resolve("books.txt"));
+        }
+
+        FileIO fileIO = new FileIO(directory.toString());
+        Path snapshot = SnapshotConverter.convert(fileIO);
+        System.out.printf("text %.1f MB, snapshot %.1f MB%n",
+                Files.size(customersFile) / (double) (1 << 20), Files.size(snapshot) / (double) (1 << 20));
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int textCustomers = fileIO.loadBooks().size() + fileIO.loadCustomers().size();
+            double textSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            SnapshotFile loaded = SnapshotFile.read(snapshot);
+            int snapshotCustomers = loaded.getBooks().size() + loaded.getCustomers().size();
+            double snapshotSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("round %d: text files %.2f s (%d records), snapshot %.2f s (%d records)%n",
+                    round, textSeconds, textCustomers, snapshotSeconds, snapshotCustomers);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.bookstore.bench;
+
+import com.bookstore.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Measures stock reservation throughput with many concurrent buyers of the
+ * same bestseller, comparing the compare-and-set path on Book with a
+ * synchronized check-and-decrement, and checks that neither oversells.
+ *
+ * Usage: java com.bookstore.bench.StockBenchmark [threads] [stock]
+ */
+public class StockBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int stock = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        for (int round = 0; round < 3; round++) {
+            Book bestseller = new Book("bestseller", "Bestseller", "Author", 1999, stock);
+            report("compare-and-set", threads, stock, () -> bestseller.tryReserve(1));
+
+            LockedStock locked = new LockedStock(stock);
+            report("synchronized", threads, stock, locked::tryReserve);
+        }
+    }
+
+    private static void report(String name, int threads, int stock, BooleanSupplier reserve)
+            throws InterruptedException {
+        AtomicLong reserved = new AtomicLong();
+        List<Thread> buyers = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread buyer = new Thread(() -> {
+                long count = 0;
+                while (reserve.getAsBoolean()) {
+                    count++;
+                }
+                reserved.addAndGet(count);
+            });
+            buyers.add(buyer);
+            buyer.start();
+        }
+        for (Thread buyer : buyers) {
+            buyer.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%s: %d buyers, %.1f M reservations/s, %d of %d sold%s%n", name, threads,
+                reserved.get() / seconds / 1e6, reserved.get(), stock,
+                reserved.get() == stock ? "" : " (WRONG)");
+    }
+
+    /**
+     * Stock guarded by a monitor, as a baseline.
+     */
+    private static class LockedStock {
+        private int quantity;
+
+        LockedStock(int quantity) {
+            this.quantity = quantity;
+        }
+
+        synchronized boolean tryReserve() {
+            if (quantity < 1) {
+                return false;
+            }
+            quantity--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bookstore.bench;
+
+import com.bookstore.util.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures durable purchase throughput of the write-ahead log with one
+ * fsync per record against group commit, with many concurrent checkouts.
+ *
+ * Usage: java com.bookstore.bench.WalBenchmark [threads] [recordsPerThread]
+ */
+public class WalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int recordsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        for (boolean groupCommit : new boolean[]{false, true}) {
+            Path file = Files.createTempFile("wal-benchmark", ".log");
+            try (WriteAheadLog log = new WriteAheadLog(file, groupCommit)) {
+                double seconds = run(log, threads, recordsPerThread);
+                System.out.printf("%s: %d threads, %.0f purchases/s, %.1f MB written%n",
+                        groupCommit ? "group commit" : "fsync per record", threads,
+                        threads * recordsPerThread / seconds, Files.size(file) / (double) (1 << 20));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static double run(WriteAheadLog log, int threads, int recordsPerThread) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            String customerId = "customer" + t;
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        log.appendAndSync("ADD_PURCHASE:" + customerId + "," + UUID.randomUUID()
+                                + ",book" + i + ",Title of book " + i + ",1,12.99,2024-03-15");
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
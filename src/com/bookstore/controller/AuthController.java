@@ -1,40 +1,66 @@
 
 package com.bookstore.controller;
 
+import com.bookstore.model.Session;
 import com.bookstore.model.User;
 import com.bookstore.util.DataStore;
+import com.bookstore.util.LoginThrottledException;
 
 /**
- * Controller for authentication-related operations.
+ * Controller for authentication-related operations on one session. Front
+ * ends serving many users log in with openSession instead, and identify the
+ * session on later calls by the token it returns.
  */
 public class AuthController {
     private DataStore dataStore;
+    private Session session;
     
     /**
-     * Constructor.
+     * Constructor for the desktop application's session.
      */
     public AuthController() {
+        this(DataStore.getInstance().getDefaultSession());
+    }
+    
+    /**
+     * Constructor for the given session.
+     */
+    public AuthController(Session session) {
         this.dataStore = DataStore.getInstance();
+        this.session = session;
     }
     
     /**
-     * Authenticates a user and updates the current user in the data store.
+     * Authenticates a user and updates the current user of the session.
      * 
      * @param username The username to authenticate
      * @param password The password to authenticate
      * @return true if authentication was successful, false otherwise
+     * @throws LoginThrottledException if too many attempts were made for the username
      */
     public boolean login(String username, String password) {
-        User authenticatedUser = dataStore.authenticateUser(username, password);
+        return login(username, password, null);
+    }
+    
+    /**
+     * Authenticates a user coming from the given client and updates the
+     * current user of the session.
+     * 
+     * @param client Where the attempt comes from, such as an address, or null if unknown
+     * @return true if authentication was successful, false otherwise
+     * @throws LoginThrottledException if too many attempts were made for the username or from the client
+     */
+    public boolean login(String username, String password, String client) {
+        User authenticatedUser = dataStore.authenticateUser(username, password, client);
         
         if (authenticatedUser != null) {
-            dataStore.setCurrentUser(authenticatedUser);
+            session.setCurrentUser(authenticatedUser);
             
             // Set appropriate screen based on user role
             if (authenticatedUser.getRole() == User.UserRole.OWNER) {
-                dataStore.setCurrentScreen("owner-dashboard");
+                session.setCurrentScreen("owner-dashboard");
             } else {
-                dataStore.setCurrentScreen("customer-dashboard");
+                session.setCurrentScreen("customer-dashboard");
             }
             
             return true;
@@ -43,26 +69,68 @@ public class AuthController {
         return false;
     }
     
+    /**
+     * Authenticates a user in a new session of the data store's session
+     * manager, leaving this controller's own session alone.
+     * 
+     * @param client Where the attempt comes from, such as an address, or null if unknown
+     * @return The token of the new session, or null if authentication failed
+     * @throws LoginThrottledException if too many attempts were made for the username or from the client
+     */
+    public String openSession(String username, String password, String client) {
+        Session tokenSession = new Session();
+        if (!new AuthController(tokenSession).login(username, password, client)) {
+            return null;
+        }
+        return dataStore.getSessionManager().open(tokenSession);
+    }
+    
+    /**
+     * Logs out the user of a token session.
+     * 
+     * @return true if the token had a live session
+     */
+    public boolean closeSession(String token) {
+        return dataStore.getSessionManager().close(token);
+    }
+    
     /**
      * Logs out the current user.
      */
     public void logout() {
-        dataStore.setCurrentUser(null);
-        dataStore.setCurrentScreen("login");
+        session.setCurrentUser(null);
+        session.setCurrentScreen("login");
     }
     
     /**
      * Gets the current user.
      */
     public User getCurrentUser() {
-        return dataStore.getCurrentUser();
+        return session.getCurrentUser();
+    }
+    
+    /**
+     * Gets the user of a token session.
+     * 
+     * @return The user, or null if the token is unknown or has expired
+     */
+    public User getCurrentUser(String token) {
+        Session tokenSession = dataStore.getSessionManager().get(token);
+        return tokenSession != null ? tokenSession.getCurrentUser() : null;
+    }
+    
+    /**
+     * Gets the session this controller works on.
+     */
+    public Session getSession() {
+        return session;
     }
     
     /**
      * Checks if the current user is an owner.
      */
     public boolean isOwner() {
-        User currentUser = dataStore.getCurrentUser();
+        User currentUser = session.getCurrentUser();
         return currentUser != null && currentUser.getRole() == User.UserRole.OWNER;
     }
     
@@ -70,7 +138,23 @@ public class AuthController {
      * Checks if the current user is a customer.
      */
     public boolean isCustomer() {
-        User currentUser = dataStore.getCurrentUser();
+        User currentUser = session.getCurrentUser();
         return currentUser != null && currentUser.getRole() == User.UserRole.CUSTOMER;
     }
+    
+    /**
+     * Checks if the user of a token session is an owner.
+     */
+    public boolean isOwner(String token) {
+        User user = getCurrentUser(token);
+        return user != null && user.getRole() == User.UserRole.OWNER;
+    }
+    
+    /**
+     * Checks if the user of a token session is a customer.
+     */
+    public boolean isCustomer(String token) {
+        User user = getCurrentUser(token);
+        return user != null && user.getRole() == User.UserRole.CUSTOMER;
+    }
 }
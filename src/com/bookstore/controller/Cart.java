@@ -0,0 +1,61 @@
+package com.bookstore.controller;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The books a customer is about to buy, one copy per entry, and whether
+ * they want to pay with their points.
+ */
+public class Cart {
+    private final Customer customer;
+    private final List<Book> books = new ArrayList<>();
+    private boolean redeemPoints;
+
+    /**
+     * Constructor for an empty cart.
+     */
+    public Cart(Customer customer) {
+        this.customer = customer;
+    }
+
+    /**
+     * Adds one copy of a book.
+     */
+    public Cart add(Book book) {
+        books.add(book);
+        return this;
+    }
+
+    /**
+     * Adds one copy of each book.
+     */
+    public Cart addAll(List<Book> books) {
+        this.books.addAll(books);
+        return this;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public boolean isEmpty() {
+        return books.isEmpty();
+    }
+
+    public boolean isRedeemPoints() {
+        return redeemPoints;
+    }
+
+    public Cart setRedeemPoints(boolean redeemPoints) {
+        this.redeemPoints = redeemPoints;
+        return this;
+    }
+}
@@ -0,0 +1,119 @@
+package com.bookstore.controller;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Order;
+import com.bookstore.model.Purchase;
+import com.bookstore.util.DataStore;
+import com.bookstore.util.StringPool;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controller for buying the books in carts. Each cart is priced once by the
+ * pricing rules, then placed as an Order: its books are taken out of stock,
+ * its points spent and a purchase per book added to the customer's history
+ * together or not at all. checkoutAll places a batch of carts in a single
+ * commit, so a server can share one journal write among many orders.
+ */
+public class CheckoutService {
+    // Times a cart is repriced when a concurrent checkout spent the points it meant to use
+    private static final int REPRICE_ATTEMPTS = 3;
+
+    private final DataStore dataStore;
+    private final List<PricingRule> rules;
+
+    /**
+     * Constructor with the default pricing rules.
+     */
+    public CheckoutService() {
+        this(DataStore.getInstance(), List.of(PricingRule.REDEEM_POINTS));
+    }
+
+    /**
+     * Constructor with the given pricing rules, applied in order.
+     */
+    public CheckoutService(DataStore dataStore, List<PricingRule> rules) {
+        this.dataStore = dataStore;
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * Prices a cart without buying anything.
+     */
+    public Quote price(Cart cart) {
+        Quote quote = new Quote(cart);
+        for (PricingRule rule : rules) {
+            rule.apply(quote);
+        }
+        return quote;
+    }
+
+    /**
+     * Buys the books in a cart.
+     *
+     * @throws IllegalArgumentException if the cart is empty or has no customer
+     */
+    public Receipt checkout(Cart cart) {
+        return checkoutAll(List.of(cart)).get(0);
+    }
+
+    /**
+     * Buys the books in each of a batch of carts, placing them in one
+     * commit. Each cart succeeds or fails on its own.
+     *
+     * @return A receipt per cart, in the same order
+     * @throws IllegalArgumentException if a cart is empty or has no customer
+     * @throws java.io.UncheckedIOException if the orders could not be saved,
+     *         in which case none of them was placed
+     */
+    public List<Receipt> checkoutAll(List<Cart> carts) {
+        for (Cart cart : carts) {
+            if (cart.getCustomer() == null || cart.isEmpty()) {
+                throw new IllegalArgumentException("Cart is empty");
+            }
+        }
+        // Every purchase of a book shares one copy of its id, title and date
+        StringPool pool = dataStore.getStringPool();
+        String date = pool.intern(LocalDate.now().toString());
+
+        Quote[] quotes = new Quote[carts.size()];
+        Order[] orders = new Order[carts.size()];
+        List<Integer> pending = new ArrayList<>(carts.size());
+        for (int i = 0; i < carts.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 0; attempt < REPRICE_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Order> batch = new ArrayList<>(pending.size());
+            for (int i : pending) {
+                quotes[i] = price(carts.get(i));
+                orders[i] = order(quotes[i], date, pool);
+                batch.add(orders[i]);
+            }
+            dataStore.placeOrders(batch);
+            pending.removeIf(i -> orders[i].getStatus() != Order.Status.NOT_ENOUGH_POINTS);
+        }
+
+        List<Receipt> receipts = new ArrayList<>(carts.size());
+        for (int i = 0; i < carts.size(); i++) {
+            receipts.add(new Receipt(orders[i], quotes[i]));
+        }
+        return receipts;
+    }
+
+    private static Order order(Quote quote, String date, StringPool pool) {
+        List<Purchase> purchases = new ArrayList<>(quote.getLineCount());
+        for (int line = 0; line < quote.getLineCount(); line++) {
+            Book book = quote.getBook(line);
+            Purchase purchase = new Purchase();
+            purchase.setBookId(pool.intern(book.getId()));
+            purchase.setBookTitle(pool.intern(book.getTitle()));
+            purchase.setQuantity(1);
+            purchase.setTotalCents(quote.getLineCents(line));
+            purchase.setDate(date);
+            purchases.add(purchase);
+        }
+        return new Order(quote.getCustomer(), quote.getCart().getBooks(), purchases, quote.getPointsToRedeem());
+    }
+}
@@ -0,0 +1,20 @@
+package com.bookstore.controller;
+
+/**
+ * A step in pricing a cart, such as a discount or paying with points.
+ * CheckoutService applies its rules in order to each cart's Quote.
+ */
+public interface PricingRule {
+    void apply(Quote quote);
+
+    /**
+     * Pays as much of the total as the customer's points cover, when the
+     * cart asks for it. Only the points needed are spent.
+     */
+    PricingRule REDEEM_POINTS = quote -> {
+        if (quote.getCart().isRedeemPoints() && quote.getCustomer() != null) {
+            long points = Math.min(quote.getCustomer().getPoints(), quote.getSubtotalCents());
+            quote.setPointsToRedeem((int) Math.max(points, 0));
+        }
+    };
+}
@@ -0,0 +1,97 @@
+package com.bookstore.controller;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+
+/**
+ * The price of a cart as PricingRules work it out. Each line starts at its
+ * book's price; rules may change line prices, which also changes the points
+ * the lines earn, and may pay part of the total with the customer's points,
+ * at one cent per point.
+ */
+public class Quote {
+    private final Cart cart;
+    private final long[] lineCents;
+    private int pointsToRedeem;
+
+    /**
+     * Constructor. Prices every line at its book's current price.
+     */
+    Quote(Cart cart) {
+        this.cart = cart;
+        this.lineCents = new long[cart.getBooks().size()];
+        for (int i = 0; i < lineCents.length; i++) {
+            lineCents[i] = cart.getBooks().get(i).getPriceCents();
+        }
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    public Customer getCustomer() {
+        return cart.getCustomer();
+    }
+
+    public int getLineCount() {
+        return lineCents.length;
+    }
+
+    public Book getBook(int line) {
+        return cart.getBooks().get(line);
+    }
+
+    public long getLineCents(int line) {
+        return lineCents[line];
+    }
+
+    public void setLineCents(int line, long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("Negative price");
+        }
+        lineCents[line] = cents;
+    }
+
+    /**
+     * Gets the sum of the line prices.
+     */
+    public long getSubtotalCents() {
+        long subtotal = 0;
+        for (long cents : lineCents) {
+            subtotal += cents;
+        }
+        return subtotal;
+    }
+
+    public int getPointsToRedeem() {
+        return pointsToRedeem;
+    }
+
+    /**
+     * Sets the points paying part of the total, at most the total itself.
+     */
+    public void setPointsToRedeem(int points) {
+        if (points < 0 || points > getSubtotalCents()) {
+            throw new IllegalArgumentException("Cannot redeem " + points + " points");
+        }
+        this.pointsToRedeem = points;
+    }
+
+    /**
+     * Gets the amount left to pay after points.
+     */
+    public long getChargedCents() {
+        return getSubtotalCents() - pointsToRedeem;
+    }
+
+    /**
+     * Gets the points the lines earn, at their prices before points.
+     */
+    public int getPointsEarned() {
+        int points = 0;
+        for (long cents : lineCents) {
+            points += Customer.pointsFor(cents);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bookstore.controller;
+
+import com.bookstore.model.Order;
+import com.bookstore.model.Purchase;
+
+import java.util.List;
+
+/**
+ * The outcome of checking out one cart.
+ */
+public class Receipt {
+    private final Order.Status status;
+    private final long subtotalCents;
+    private final long chargedCents;
+    private final int pointsRedeemed;
+    private final int points;
+    private final List<Purchase> purchases;
+
+    Receipt(Order order, Quote quote) {
+        this.status = order.getStatus();
+        this.subtotalCents = quote.getSubtotalCents();
+        this.chargedCents = quote.getChargedCents();
+        this.pointsRedeemed = quote.getPointsToRedeem();
+        this.points = order.getCustomer().getPoints();
+        this.purchases = order.getPurchases();
+    }
+
+    /**
+     * Checks if the order was placed. Otherwise nothing was bought and the
+     * status tells why.
+     */
+    public boolean isPlaced() {
+        return status == Order.Status.PLACED;
+    }
+
+    public Order.Status getStatus() {
+        return status;
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getChargedCents() {
+        return chargedCents;
+    }
+
+    public int getPointsRedeemed() {
+        return pointsRedeemed;
+    }
+
+    /**
+     * Gets the customer's points balance right after checking out.
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    public List<Purchase> getPurchases() {
+        return purchases;
+    }
+}
@@ -0,0 +1,217 @@
+package com.bookstore.model;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encoding shared by the purchase stores. A row is seven numbers: customer
+ * key, book key, quantity, day, total cents and the purchase id as two
+ * longs. Subclasses decide where those numbers live.
+ *
+ * Book id and title pairs, customer ids and dates that are not ISO
+ * yyyy-MM-dd are dictionary-encoded on the heap; ids that are not
+ * canonical UUIDs sit in a side map and are stored as 0 and 0.
+ */
+abstract class AbstractPurchaseStore implements PurchaseStore {
+    // Epoch day of 0000-01-01, the earliest ISO date stored as a day; day
+    // values below it are date dictionary keys offset from Integer.MIN_VALUE
+    private static final int MIN_EPOCH_DAY = (int) LocalDate.of(0, 1, 1).toEpochDay();
+
+    private static final class BookKey {
+        final String id;
+        final String title;
+
+        BookKey(String id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BookKey && Objects.equals(id, ((BookKey) other).id)
+                    && Objects.equals(title, ((BookKey) other).title);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id) * 31 + Objects.hashCode(title);
+        }
+    }
+
+    private final ValueDictionary<String> customers = new ValueDictionary<>();
+    private final ValueDictionary<BookKey> books = new ValueDictionary<>();
+    private final ValueDictionary<String> dates = new ValueDictionary<>();
+    private final Map<Integer, String> otherIds = new ConcurrentHashMap<>();
+
+    private volatile int size;
+
+    /**
+     * Writes the encoded fields of a row. Called with the store locked, for
+     * rows in order, before the row is counted in size().
+     */
+    abstract void writeRow(int row, int customerKey, int bookKey, int quantity, int day, long cents,
+                           long idHigh, long idLow);
+
+    /**
+     * Reads the raw day field of a row: an epoch day or an offset date key.
+     */
+    abstract int day(int row);
+
+    abstract long idHigh(int row);
+
+    abstract long idLow(int row);
+
+    @Override
+    public int customerKey(String customerId) {
+        return customers.encode(customerId);
+    }
+
+    @Override
+    public synchronized int append(int customerKey, Purchase purchase) {
+        int row = size;
+        long idHigh = 0;
+        long idLow = 0;
+        UUID uuid = parseUuid(purchase.getId());
+        if (uuid != null) {
+            idHigh = uuid.getMostSignificantBits();
+            idLow = uuid.getLeastSignificantBits();
+        } else if (purchase.getId() != null) {
+            otherIds.put(row, purchase.getId());
+        }
+
+        writeRow(row, customerKey,
+                books.encode(new BookKey(purchase.getBookId(), purchase.getBookTitle())),
+                purchase.getQuantity(),
+                encodeDate(purchase.getDate()),
+                purchase.getTotalCents(),
+                idHigh, idLow);
+        size = row + 1;
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int epochDay(int row) {
+        int day = day(row);
+        return day >= MIN_EPOCH_DAY ? day : Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String customerId(int row) {
+        return customers.decode(customerKey(row));
+    }
+
+    @Override
+    public String id(int row) {
+        long idHigh = idHigh(row);
+        long idLow = idLow(row);
+        if (idHigh == 0 && idLow == 0) {
+            return otherIds.get(row);
+        }
+        return new UUID(idHigh, idLow).toString();
+    }
+
+    @Override
+    public String bookId(int row) {
+        return books.decode(bookKey(row)).id;
+    }
+
+    @Override
+    public String bookTitle(int row) {
+        return books.decode(bookKey(row)).title;
+    }
+
+    @Override
+    public String date(int row) {
+        int day = day(row);
+        if (day >= MIN_EPOCH_DAY) {
+            return LocalDate.ofEpochDay(day).toString();
+        }
+        return dates.decode(day - Integer.MIN_VALUE);
+    }
+
+    /**
+     * Gets the book id for a book key, as returned by bookKey.
+     */
+    public String bookIdOf(int bookKey) {
+        return books.decode(bookKey).id;
+    }
+
+    /**
+     * Gets the number of distinct book keys assigned so far.
+     */
+    public int bookKeyCount() {
+        return books.size();
+    }
+
+    /**
+     * Encodes an ISO yyyy-MM-dd date as its epoch day and anything else as
+     * a key into the date dictionary.
+     */
+    private int encodeDate(String date) {
+        int day = parseEpochDay(date);
+        return day != Integer.MIN_VALUE ? day : Integer.MIN_VALUE + dates.encode(date);
+    }
+
+    /**
+     * Parses a date of exactly the form yyyy-MM-dd, which LocalDate formats
+     * back identically.
+     *
+     * @return The epoch day, or Integer.MIN_VALUE if the date is not of that form
+     */
+    static int parseEpochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return Integer.MIN_VALUE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses an id that is a UUID in canonical form, other than the nil
+     * UUID, so it can be written back identically; otherwise returns null.
+     */
+    static UUID parseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            if (uuid.getMostSignificantBits() == 0 && uuid.getLeastSignificantBits() == 0) {
+                return null;
+            }
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package com.bookstore.model;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a book in the bookstore inventory.
@@ -10,8 +11,8 @@ public class Book {
     private String id;
     private String title;
     private String author;
-    private double price;
-    private int quantity;
+    private long priceCents;
+    private final AtomicInteger quantity = new AtomicInteger();
 
     /**
      * Default constructor for creating a new book with a random ID.
@@ -23,12 +24,36 @@ public class Book {
     /**
      * Constructor for creating a book with all fields.
      */
-    public Book(String id, String title, String author, double price, int quantity) {
+    public Book(String id, String title, String author, long priceCents, int quantity) {
         this.id = id;
         this.title = title;
         this.author = author;
-        this.price = price;
-        this.quantity = quantity;
+        this.priceCents = priceCents;
+        this.quantity.set(quantity);
+    }
+
+    /**
+     * Takes copies out of stock if enough are left. Safe to call from many
+     * threads at once; concurrent buyers can never take more than the stock.
+     *
+     * @return true if the copies were reserved, false if too few are left
+     */
+    public boolean tryReserve(int count) {
+        int available;
+        do {
+            available = quantity.get();
+            if (available < count) {
+                return false;
+            }
+        } while (!quantity.compareAndSet(available, available - count));
+        return true;
+    }
+
+    /**
+     * Returns reserved copies to stock.
+     */
+    public void release(int count) {
+        quantity.addAndGet(count);
     }
 
     // Getters and setters
@@ -56,20 +81,34 @@ public class Book {
         this.author = author;
     }
 
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
+    }
+
+    /**
+     * Gets the price in dollars, for display.
+     */
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceCents);
     }
 
+    /**
+     * Sets the price in dollars, rounded to the nearest cent.
+     */
     public void setPrice(double price) {
-        this.price = price;
+        this.priceCents = Money.fromDouble(price);
     }
 
     public int getQuantity() {
-        return quantity;
+        return quantity.get();
     }
 
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        this.quantity.set(quantity);
     }
 
     @Override
@@ -78,8 +117,8 @@ public class Book {
                 "id='" + id + '\'' +
                 ", title='" + title + '\'' +
                 ", author='" + author + '\'' +
-                ", price=" + price +
-                ", quantity=" + quantity +
+                ", price=" + Money.format(priceCents) +
+                ", quantity=" + quantity.get() +
                 '}';
     }
 }
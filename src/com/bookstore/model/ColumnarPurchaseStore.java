@@ -0,0 +1,100 @@
+package com.bookstore.model;
+
+import java.util.Arrays;
+
+/**
+ * Purchase store that keeps each field in its own primitive array, so a
+ * purchase costs about 40 bytes instead of a Purchase object and four
+ * Strings, and scans over one field read memory sequentially.
+ *
+ * Columns per row:
+ * <pre>
+ * customer  int    key into the customer id dictionary
+ * book      int    key into the (book id, title) dictionary
+ * quantity  int
+ * cents     long   total price
+ * day       int    epoch day, or a key into the date dictionary
+ * idHigh    long   purchase id as a UUID, or 0 and 0 with the id
+ * idLow     long   held in a side map
+ * </pre>
+ * Rows live in fixed-size chunks, so growing the store never copies them.
+ * Rows are never removed; those of a deleted customer stay until the store
+ * is rebuilt by the next load.
+ */
+public class ColumnarPurchaseStore extends AbstractPurchaseStore {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final class Chunk {
+        final int[] customer = new int[CHUNK_SIZE];
+        final int[] book = new int[CHUNK_SIZE];
+        final int[] quantity = new int[CHUNK_SIZE];
+        final int[] day = new int[CHUNK_SIZE];
+        final long[] cents = new long[CHUNK_SIZE];
+        final long[] idHigh = new long[CHUNK_SIZE];
+        final long[] idLow = new long[CHUNK_SIZE];
+    }
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    @Override
+    void writeRow(int row, int customerKey, int bookKey, int quantity, int day, long cents,
+                  long idHigh, long idLow) {
+        Chunk[] current = chunks;
+        if ((row >>> CHUNK_BITS) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Chunk();
+            chunks = current;
+        }
+        Chunk chunk = current[row >>> CHUNK_BITS];
+        int i = row & CHUNK_MASK;
+
+        chunk.customer[i] = customerKey;
+        chunk.book[i] = bookKey;
+        chunk.quantity[i] = quantity;
+        chunk.day[i] = day;
+        chunk.cents[i] = cents;
+        chunk.idHigh[i] = idHigh;
+        chunk.idLow[i] = idLow;
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    @Override
+    public int customerKey(int row) {
+        return chunk(row).customer[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int bookKey(int row) {
+        return chunk(row).book[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int quantity(int row) {
+        return chunk(row).quantity[row & CHUNK_MASK];
+    }
+
+    @Override
+    public long totalCents(int row) {
+        return chunk(row).cents[row & CHUNK_MASK];
+    }
+
+    @Override
+    int day(int row) {
+        return chunk(row).day[row & CHUNK_MASK];
+    }
+
+    @Override
+    long idHigh(int row) {
+        return chunk(row).idHigh[row & CHUNK_MASK];
+    }
+
+    @Override
+    long idLow(int row) {
+        return chunk(row).idLow[row & CHUNK_MASK];
+    }
+}
@@ -14,6 +14,9 @@ public class Customer {
     private String password;
     private String name;
     private List<Purchase> purchaseHistory;
+    // Loyalty points ledger, kept up to date by addPurchase and redeemPoints.
+    // DataStore serialises changes to one customer, so reads need no lock.
+    private volatile int points;
 
     /**
      * Default constructor for creating a new customer with a random ID.
@@ -32,16 +35,49 @@ public class Customer {
         this.password = password;
         this.name = name;
         this.purchaseHistory = purchaseHistory != null ? purchaseHistory : new ArrayList<>();
+        for (Purchase purchase : this.purchaseHistory) {
+            this.points += pointsFor(purchase);
+        }
     }
 
     /**
-     * Adds a purchase to the customer's purchase history.
+     * Adds a purchase to the customer's purchase history and credits the
+     * points it earns.
      */
     public void addPurchase(Purchase purchase) {
         if (this.purchaseHistory == null) {
             this.purchaseHistory = new ArrayList<>();
         }
         this.purchaseHistory.add(purchase);
+        this.points += pointsFor(purchase);
+    }
+
+    /**
+     * Spends points from the customer's balance.
+     *
+     * @return true if the customer had enough points
+     */
+    public boolean redeemPoints(int amount) {
+        if (amount < 0 || amount > points) {
+            return false;
+        }
+        this.points -= amount;
+        return true;
+    }
+
+    /**
+     * Gets the points a purchase earns: 10 points per 1 CAD spent, so one
+     * point per 10 cents.
+     */
+    public static int pointsFor(Purchase purchase) {
+        return pointsFor(purchase.getTotalCents());
+    }
+
+    /**
+     * Gets the points an amount of cents spent earns.
+     */
+    public static int pointsFor(long cents) {
+        return (int) (cents / 10);
     }
 
     // Getters and setters
@@ -77,6 +113,14 @@ public class Customer {
         this.name = name;
     }
 
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+
     public List<Purchase> getPurchaseHistory() {
         return purchaseHistory;
     }
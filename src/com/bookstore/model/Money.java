@@ -0,0 +1,115 @@
+package com.bookstore.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Amounts of money as a primitive long number of cents, so prices and
+ * totals add up exactly. The amounts are plain longs; this class converts
+ * them to and from text.
+ */
+public final class Money {
+    /**
+     * Largest number of whole units a parsed amount may have before its last
+     * digit; with that digit, two decimals and rounding it still fits a long.
+     */
+    public static final long MAX_UNITS = (Long.MAX_VALUE / 100 - 10) / 10;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a plain decimal amount such as "12.99", "12.9" or "-3" into
+     * cents. Digits past the second decimal place are rounded half away
+     * from zero.
+     *
+     * @throws NumberFormatException if the text is not a plain decimal
+     */
+    public static long parse(CharSequence text) {
+        // Characters outside ASCII encode to bytes that are not digits, so they are rejected too
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        return parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Parses a plain decimal amount from the ASCII bytes [from, to) of a
+     * buffer, as parse(CharSequence) does, without going through floating
+     * point or moving the buffer's position.
+     *
+     * @throws NumberFormatException if the bytes are not a plain decimal
+     */
+    public static long parse(ByteBuffer bytes, int from, int to) {
+        boolean negative = from < to && bytes.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        long cents = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < to; i++) {
+            int b = bytes.get(i);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b >= '0' && b <= '9') {
+                digits++;
+                if (scale < 0) {
+                    if (cents > MAX_UNITS) {
+                        throw new NumberFormatException("Amount out of range: " + text(bytes, from, to));
+                    }
+                    cents = cents * 10 + (b - '0');
+                } else if (scale < 2) {
+                    cents = cents * 10 + (b - '0');
+                    scale++;
+                } else if (scale == 2) {
+                    cents += b >= '5' ? 1 : 0;
+                    scale++;
+                }
+            } else {
+                throw new NumberFormatException("Not an amount: " + text(bytes, from, to));
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount: " + text(bytes, from, to));
+        }
+        for (int s = Math.max(scale, 0); s < 2; s++) {
+            cents = cents * 10;
+        }
+        return negative ? -cents : cents;
+    }
+
+    private static String text(ByteBuffer bytes, int from, int to) {
+        return StandardCharsets.UTF_8.decode(bytes.duplicate().limit(to).position(from)).toString();
+    }
+
+    /**
+     * Formats cents as a decimal amount with two places, such as "12.99".
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(12), cents).toString();
+    }
+
+    /**
+     * Appends cents as a decimal amount with two places.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        return builder.append(units).append('.').append((char) ('0' + fraction / 10))
+                .append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Converts an amount held as a double, rounding to the nearest cent.
+     */
+    public static long fromDouble(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Converts cents to a double, for display only.
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+}
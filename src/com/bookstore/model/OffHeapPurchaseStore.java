@@ -0,0 +1,182 @@
+package com.bookstore.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Purchase store that keeps its rows in direct ByteBuffers outside the
+ * Java heap, so the garbage collector never scans or copies them. Only the
+ * dictionaries of book, customer and unusual date and id values stay on the
+ * heap.
+ *
+ * Each row is a fixed-width 40-byte record, in native byte order:
+ * <pre>
+ *  0 int  customer key
+ *  4 int  book key
+ *  8 int  quantity
+ * 12 int  day
+ * 16 long total cents
+ * 24 long purchase id, high bits
+ * 32 long purchase id, low bits
+ * </pre>
+ * Records are allocated in chunks of 64K rows (2.5 MB), which count
+ * against -XX:MaxDirectMemorySize. Use a Cursor to scan rows without
+ * allocating.
+ */
+public class OffHeapPurchaseStore extends AbstractPurchaseStore {
+    static final int RECORD_SIZE = 40;
+    private static final int CUSTOMER = 0;
+    private static final int BOOK = 4;
+    private static final int QUANTITY = 8;
+    private static final int DAY = 12;
+    private static final int CENTS = 16;
+    private static final int ID_HIGH = 24;
+    private static final int ID_LOW = 32;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    @Override
+    void writeRow(int row, int customerKey, int bookKey, int quantity, int day, long cents,
+                  long idHigh, long idLow) {
+        ByteBuffer[] current = chunks;
+        if ((row >>> CHUNK_BITS) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(RECORD_SIZE << CHUNK_BITS)
+                    .order(ByteOrder.nativeOrder());
+            chunks = current;
+        }
+        ByteBuffer chunk = current[row >>> CHUNK_BITS];
+        int offset = (row & CHUNK_MASK) * RECORD_SIZE;
+
+        chunk.putInt(offset + CUSTOMER, customerKey);
+        chunk.putInt(offset + BOOK, bookKey);
+        chunk.putInt(offset + QUANTITY, quantity);
+        chunk.putInt(offset + DAY, day);
+        chunk.putLong(offset + CENTS, cents);
+        chunk.putLong(offset + ID_HIGH, idHigh);
+        chunk.putLong(offset + ID_LOW, idLow);
+    }
+
+    private ByteBuffer chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    private static int offset(int row) {
+        return (row & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    @Override
+    public int customerKey(int row) {
+        return chunk(row).getInt(offset(row) + CUSTOMER);
+    }
+
+    @Override
+    public int bookKey(int row) {
+        return chunk(row).getInt(offset(row) + BOOK);
+    }
+
+    @Override
+    public int quantity(int row) {
+        return chunk(row).getInt(offset(row) + QUANTITY);
+    }
+
+    @Override
+    public long totalCents(int row) {
+        return chunk(row).getLong(offset(row) + CENTS);
+    }
+
+    @Override
+    int day(int row) {
+        return chunk(row).getInt(offset(row) + DAY);
+    }
+
+    @Override
+    long idHigh(int row) {
+        return chunk(row).getLong(offset(row) + ID_HIGH);
+    }
+
+    @Override
+    long idLow(int row) {
+        return chunk(row).getLong(offset(row) + ID_LOW);
+    }
+
+    /**
+     * Creates a cursor for reading rows of this store.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Flyweight view of one record. Moving it to another row allocates
+     * nothing, so a scan over millions of rows creates no garbage. A cursor
+     * is for use by one thread.
+     */
+    public final class Cursor {
+        private ByteBuffer chunk;
+        private int offset;
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves to a row below size().
+         */
+        public Cursor moveTo(int row) {
+            this.chunk = chunk(row);
+            this.offset = offset(row);
+            this.row = row;
+            return this;
+        }
+
+        /**
+         * Moves to the next row.
+         *
+         * @return false if there is none
+         */
+        public boolean next() {
+            if (row + 1 >= size()) {
+                return false;
+            }
+            if (chunk == null || ((row + 1) & CHUNK_MASK) == 0) {
+                moveTo(row + 1);
+            } else {
+                row++;
+                offset += RECORD_SIZE;
+            }
+            return true;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public int customerKey() {
+            return chunk.getInt(offset + CUSTOMER);
+        }
+
+        public int bookKey() {
+            return chunk.getInt(offset + BOOK);
+        }
+
+        public int quantity() {
+            return chunk.getInt(offset + QUANTITY);
+        }
+
+        public long totalCents() {
+            return chunk.getLong(offset + CENTS);
+        }
+
+        /**
+         * Gets the day of the purchase, as in OffHeapPurchaseStore.epochDay.
+         */
+        public int epochDay() {
+            return OffHeapPurchaseStore.this.epochDay(row);
+        }
+    }
+}
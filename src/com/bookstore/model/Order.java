@@ -0,0 +1,62 @@
+package com.bookstore.model;
+
+import java.util.List;
+
+/**
+ * An order ready to be placed: the books it takes out of stock, the
+ * purchases it adds to the customer's history and the points it spends.
+ * DataStore.placeOrders records it as a whole or not at all and sets its
+ * status.
+ */
+public class Order {
+    /**
+     * Enum representing the outcome of placing an order.
+     */
+    public enum Status {
+        PENDING,
+        PLACED,
+        OUT_OF_STOCK,
+        NOT_ENOUGH_POINTS
+    }
+
+    private final Customer customer;
+    private final List<Book> books;
+    private final List<Purchase> purchases;
+    private final int pointsRedeemed;
+    private volatile Status status = Status.PENDING;
+
+    /**
+     * Constructor for creating an order with all fields.
+     */
+    public Order(Customer customer, List<Book> books, List<Purchase> purchases, int pointsRedeemed) {
+        this.customer = customer;
+        this.books = books;
+        this.purchases = purchases;
+        this.pointsRedeemed = pointsRedeemed;
+    }
+
+    // Getters and setters
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<Purchase> getPurchases() {
+        return purchases;
+    }
+
+    public int getPointsRedeemed() {
+        return pointsRedeemed;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+}
@@ -11,7 +11,7 @@ public class Purchase {
     private String bookId;
     private String bookTitle;
     private int quantity;
-    private double totalPrice;
+    private long totalCents;
     private String date;
     
     /**
@@ -24,12 +24,12 @@ public class Purchase {
     /**
      * Constructor for creating a purchase with all fields.
      */
-    public Purchase(String id, String bookId, String bookTitle, int quantity, double totalPrice, String date) {
+    public Purchase(String id, String bookId, String bookTitle, int quantity, long totalCents, String date) {
         this.id = id;
         this.bookId = bookId;
         this.bookTitle = bookTitle;
         this.quantity = quantity;
-        this.totalPrice = totalPrice;
+        this.totalCents = totalCents;
         this.date = date;
     }
     
@@ -62,21 +62,37 @@ public class Purchase {
         return quantity;
     }
     
+    /**
+     * Sets the quantity, scaling the total price so the price per book is
+     * unchanged.
+     */
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
-        // Update totalPrice based on the new quantity
-        if (totalPrice > 0 && quantity > 0) {
-            double pricePerItem = totalPrice / (quantity - 1);
-            this.totalPrice = pricePerItem * quantity;
+        if (this.quantity > 0 && quantity > 0) {
+            this.totalCents = totalCents * quantity / this.quantity;
         }
+        this.quantity = quantity;
+    }
+    
+    public long getTotalCents() {
+        return totalCents;
+    }
+    
+    public void setTotalCents(long totalCents) {
+        this.totalCents = totalCents;
     }
     
+    /**
+     * Gets the total price in dollars, for display.
+     */
     public double getTotalPrice() {
-        return totalPrice;
+        return Money.toDouble(totalCents);
     }
     
+    /**
+     * Sets the total price in dollars, rounded to the nearest cent.
+     */
     public void setTotalPrice(double totalPrice) {
-        this.totalPrice = totalPrice;
+        this.totalCents = Money.fromDouble(totalPrice);
     }
     
     public String getDate() {
@@ -88,19 +104,33 @@ public class Purchase {
     }
     
     /**
-     * Gets the price of a single book (total price divided by quantity).
+     * Gets the price of a single book in cents (total price divided by quantity).
      * @return The price per book, or 0 if quantity is 0
      */
+    public long getPriceCents() {
+        return quantity > 0 ? totalCents / quantity : 0;
+    }
+    
+    /**
+     * Sets the price of a single book in cents and updates the total price accordingly.
+     * @param priceCents The price per book
+     */
+    public void setPriceCents(long priceCents) {
+        this.totalCents = priceCents * this.quantity;
+    }
+    
+    /**
+     * Gets the price of a single book in dollars, for display.
+     */
     public double getPrice() {
-        return quantity > 0 ? totalPrice / quantity : 0;
+        return Money.toDouble(getPriceCents());
     }
     
     /**
-     * Sets the price of a single book and updates the total price accordingly.
-     * @param price The price per book
+     * Sets the price of a single book in dollars, rounded to the nearest cent.
      */
     public void setPrice(double price) {
-        this.totalPrice = price * this.quantity;
+        setPriceCents(Money.fromDouble(price));
     }
     
     @Override
@@ -110,7 +140,7 @@ public class Purchase {
                 ", bookId='" + bookId + '\'' +
                 ", bookTitle='" + bookTitle + '\'' +
                 ", quantity=" + quantity +
-                ", totalPrice=" + totalPrice +
+                ", totalPrice=" + Money.format(totalCents) +
                 ", date='" + date + '\'' +
                 '}';
     }
@@ -0,0 +1,77 @@
+package com.bookstore.model;
+
+import java.util.List;
+
+/**
+ * Storage for purchase records outside of individual Purchase objects.
+ * Each record is a numbered row, read field by field; the histories made by
+ * newHistory are lazy views over one customer's rows that only materialize
+ * a Purchase when an element is read.
+ *
+ * Implementations allow one thread to append while others read rows below
+ * size().
+ */
+public interface PurchaseStore {
+
+    /**
+     * Gets the key used for a customer's rows, assigning one if needed.
+     */
+    int customerKey(String customerId);
+
+    /**
+     * Stores a purchase for the customer with the given key.
+     *
+     * @return The row of the new record
+     */
+    int append(int customerKey, Purchase purchase);
+
+    /**
+     * Gets the number of rows stored.
+     */
+    int size();
+
+    /**
+     * Gets the key of the customer who made the purchase in a row.
+     */
+    int customerKey(int row);
+
+    /**
+     * Gets the dictionary key of the book id and title of a row. Rows for
+     * the same book sold under the same title share a key.
+     */
+    int bookKey(int row);
+
+    /**
+     * Gets the day of the purchase as days since 1970-01-01, or
+     * Integer.MIN_VALUE if the row's date is not an ISO yyyy-MM-dd date.
+     */
+    int epochDay(int row);
+
+    int quantity(int row);
+
+    long totalCents(int row);
+
+    String customerId(int row);
+
+    String id(int row);
+
+    String bookId(int row);
+
+    String bookTitle(int row);
+
+    String date(int row);
+
+    /**
+     * Reads a row into a new Purchase.
+     */
+    default Purchase get(int row) {
+        return new Purchase(id(row), bookId(row), bookTitle(row), quantity(row), totalCents(row), date(row));
+    }
+
+    /**
+     * Creates an empty purchase history for a customer, backed by this store.
+     */
+    default List<Purchase> newHistory(String customerId) {
+        return new StoredPurchaseHistory(this, customerKey(customerId));
+    }
+}
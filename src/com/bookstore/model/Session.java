@@ -0,0 +1,35 @@
+package com.bookstore.model;
+
+/**
+ * Holds the state of one user's session with the bookstore, so several
+ * users can be logged in to the same data store at once.
+ */
+public class Session {
+    private volatile User currentUser;
+    private volatile String currentScreen;
+
+    /**
+     * Constructor for a session that is not logged in.
+     */
+    public Session() {
+        this.currentUser = null;
+        this.currentScreen = "login";
+    }
+
+    // Getters and setters
+    public User getCurrentUser() {
+        return currentUser;
+    }
+
+    public void setCurrentUser(User currentUser) {
+        this.currentUser = currentUser;
+    }
+
+    public String getCurrentScreen() {
+        return currentScreen;
+    }
+
+    public void setCurrentScreen(String currentScreen) {
+        this.currentScreen = currentScreen;
+    }
+}
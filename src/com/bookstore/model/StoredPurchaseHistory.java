@@ -0,0 +1,58 @@
+package com.bookstore.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * One customer's purchase history, held as row numbers in a PurchaseStore.
+ * Reading an element materializes a new Purchase from its row, so changes to
+ * a Purchase read from the list are not stored; adding one stores its
+ * fields. Like ArrayList, it needs outside locking when one thread adds
+ * while others read.
+ */
+public class StoredPurchaseHistory extends AbstractList<Purchase> {
+    private final PurchaseStore store;
+    private final int customerKey;
+    private int[] rows = new int[4];
+    private int size;
+
+    StoredPurchaseHistory(PurchaseStore store, int customerKey) {
+        this.store = store;
+        this.customerKey = customerKey;
+    }
+
+    public PurchaseStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the store row of the purchase at the given position.
+     */
+    public int rowAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return rows[index];
+    }
+
+    @Override
+    public Purchase get(int index) {
+        return store.get(rowAt(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Purchase purchase) {
+        int row = store.append(customerKey, purchase);
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        rows[size++] = row;
+        modCount++;
+        return true;
+    }
+}
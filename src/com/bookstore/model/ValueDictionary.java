@@ -0,0 +1,40 @@
+package com.bookstore.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each distinct value a dense int key, for dictionary-encoded
+ * columns. Values may be null. Encoding is synchronized; decoding a key
+ * that was published to the reader by other means needs no lock.
+ */
+final class ValueDictionary<T> {
+    private final Map<T, Integer> keys = new HashMap<>();
+    private volatile Object[] values = new Object[16];
+    private int size;
+
+    synchronized int encode(T value) {
+        Integer key = keys.get(value);
+        if (key != null) {
+            return key;
+        }
+        Object[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        keys.put(value, size);
+        return size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    T decode(int key) {
+        return (T) values[key];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,96 @@
+package com.bookstore.server;
+
+import com.bookstore.controller.CheckoutService;
+import com.bookstore.controller.PricingRule;
+import com.bookstore.util.DataStore;
+import com.bookstore.util.Threads;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Headless mode: serves the bookstore as a JSON API over HTTP instead of
+ * through a desktop window, so a storefront can put many shoppers on one
+ * process. Each request runs on a thread of its own from
+ * Threads.newTaskExecutor, a virtual thread on Java 21 and later, so a
+ * request blocked on a journal fsync holds no platform thread.
+ *
+ * Usage: java com.bookstore.server.ApiServer [port]
+ */
+public class ApiServer {
+    /** Port the server listens on when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+
+    // Connections waiting to be accepted; the default of 50 drops bursts of clients
+    private static final int BACKLOG = 1024;
+    // The JDK server closes keep-alive connections past 200 idle ones, which
+    // makes most of a few thousand shoppers reconnect for every request
+    private static final String MAX_IDLE_CONNECTIONS_PROPERTY = "sun.net.httpserver.maxIdleConnections";
+    private static final String DEFAULT_MAX_IDLE_CONNECTIONS = "10000";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CheckoutBatcher checkoutBatcher;
+
+    /**
+     * Constructor. The server does not accept requests until started.
+     *
+     * @param port The port to listen on, or 0 for any free port
+     */
+    public ApiServer(DataStore dataStore, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Threads.newTaskExecutor("http");
+        server.setExecutor(executor);
+        this.checkoutBatcher = new CheckoutBatcher(
+                new CheckoutService(dataStore, List.of(PricingRule.REDEEM_POINTS)));
+        server.createContext(BookstoreApi.PREFIX, new BookstoreApi(dataStore, checkoutBatcher));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, giving those in progress up to the given
+     * number of seconds to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        checkoutBatcher.close();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        if (System.getProperty(MAX_IDLE_CONNECTIONS_PROPERTY) == null) {
+            System.setProperty(MAX_IDLE_CONNECTIONS_PROPERTY, DEFAULT_MAX_IDLE_CONNECTIONS);
+        }
+
+        DataStore dataStore = DataStore.getInstance();
+        dataStore.loadData();
+
+        ApiServer server = new ApiServer(dataStore, port);
+        server.start();
+        System.out.println("Bookstore API listening on port " + server.getPort());
+
+        // Save data when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            System.out.println("Saving data...");
+            dataStore.saveData();
+        }));
+    }
+}
@@ -0,0 +1,582 @@
+package com.bookstore.server;
+
+import com.bookstore.controller.AuthController;
+import com.bookstore.controller.Cart;
+import com.bookstore.controller.Receipt;
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Money;
+import com.bookstore.model.Order;
+import com.bookstore.model.Purchase;
+import com.bookstore.model.Session;
+import com.bookstore.model.User;
+import com.bookstore.util.DataStore;
+import com.bookstore.util.LoginThrottledException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serves the JSON API under /api/. Logging in opens a session of the data
+ * store's SessionManager, and requests that need a user carry its token as
+ * "Authorization: Bearer <token>" until logging out or leaving it idle ends
+ * it. Requests may instead carry HTTP Basic credentials, which are checked
+ * through an AuthController on a session of the request's own.
+ *
+ * GET    /api/books?q=&offset=&limit=   browse, or search when q is given
+ * GET    /api/books/{id}
+ * POST   /api/books                     owner: {title, author, price, quantity}
+ * DELETE /api/books/{id}                owner
+ * POST   /api/login                     {username, password} or Basic credentials: {token, username, role}
+ * POST   /api/logout                    ends the session of the request's token
+ * GET    /api/account                   customer
+ * GET    /api/account/purchases         customer
+ * POST   /api/checkout                  customer: {bookIds: [...], redeemPoints}
+ * GET    /api/customers                 owner
+ * GET    /api/customers/{username}      owner
+ * POST   /api/customers                 owner: {username, password, name}
+ * DELETE /api/customers/{username}      owner
+ */
+final class BookstoreApi implements HttpHandler {
+    static final String PREFIX = "/api/";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    private final DataStore dataStore;
+    private final CheckoutBatcher checkoutBatcher;
+    // Token sessions live in the session manager, so this needs no session of its own
+    private final AuthController authController = new AuthController(new Session());
+
+    BookstoreApi(DataStore dataStore, CheckoutBatcher checkoutBatcher) {
+        this.dataStore = dataStore;
+        this.checkoutBatcher = checkoutBatcher;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Json json = new Json();
+        int status;
+        try {
+            status = route(exchange, json);
+        } catch (ApiException e) {
+            status = e.getStatus();
+            json = error(e.getMessage());
+            if (status == 401) {
+                exchange.getResponseHeaders().set("WWW-Authenticate",
+                        "Bearer realm=\"bookstore\", Basic realm=\"bookstore\"");
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            json = error(e.getMessage());
+        } catch (LoginThrottledException e) {
+            status = 429;
+            json = error(e.getMessage());
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        } catch (RejectedExecutionException e) {
+            // Too many logins waiting for password hashing
+            status = 503;
+            json = error("Server busy");
+            exchange.getResponseHeaders().set("Retry-After", "1");
+        } catch (RuntimeException e) {
+            System.err.println("Error handling request: " + e.getMessage());
+            status = 500;
+            json = error("Internal error");
+        }
+        send(exchange, status, json);
+    }
+
+    private static Json error(String message) {
+        return new Json().beginObject().field("error", message).endObject();
+    }
+
+    private static void send(HttpExchange exchange, int status, Json json) throws IOException {
+        try (exchange) {
+            if (status == 204) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Serves a request, writing the response body to json.
+     *
+     * @return The HTTP status
+     */
+    private int route(HttpExchange exchange, Json json) throws IOException {
+        String[] path = pathSegments(exchange);
+        String method = exchange.getRequestMethod();
+        String resource = path.length > 0 ? path[0] : "";
+
+        switch (resource) {
+            case "books":
+                if (path.length == 1 && method.equals("GET")) {
+                    listBooks(query(exchange), json);
+                    return 200;
+                }
+                if (path.length == 1 && method.equals("POST")) {
+                    requireOwner(exchange);
+                    writeBook(addBook(body(exchange)), json);
+                    return 201;
+                }
+                if (path.length == 2 && method.equals("GET")) {
+                    writeBook(findBook(path[1]), json);
+                    return 200;
+                }
+                if (path.length == 2 && method.equals("DELETE")) {
+                    requireOwner(exchange);
+                    dataStore.removeBook(findBook(path[1]));
+                    return 204;
+                }
+                break;
+            case "login":
+                if (path.length == 1 && method.equals("POST")) {
+                    String token = login(exchange);
+                    User user = authController.getCurrentUser(token);
+                    json.beginObject().field("token", token).field("username", user.getUsername())
+                            .field("role", user.getRole().name()).endObject();
+                    return 200;
+                }
+                break;
+            case "logout":
+                if (path.length == 1 && method.equals("POST")) {
+                    String token = bearerToken(exchange);
+                    if (token == null || !authController.closeSession(token)) {
+                        throw new ApiException(401, "No session to log out of");
+                    }
+                    return 204;
+                }
+                break;
+            case "account":
+                if (path.length == 1 && method.equals("GET")) {
+                    writeCustomer(requireCustomer(exchange), json);
+                    return 200;
+                }
+                if (path.length == 2 && path[1].equals("purchases") && method.equals("GET")) {
+                    writePurchases(dataStore.getPurchaseHistory(requireCustomer(exchange)), json);
+                    return 200;
+                }
+                break;
+            case "checkout":
+                if (path.length == 1 && method.equals("POST")) {
+                    checkout(requireCustomer(exchange), body(exchange), json);
+                    return 200;
+                }
+                break;
+            case "customers":
+                if (path.length == 1 && method.equals("GET")) {
+                    requireOwner(exchange);
+                    json.beginArray();
+                    for (Customer customer : dataStore.getCustomers()) {
+                        writeCustomer(customer, json);
+                    }
+                    json.endArray();
+                    return 200;
+                }
+                if (path.length == 1 && method.equals("POST")) {
+                    requireOwner(exchange);
+                    writeCustomer(addCustomer(body(exchange)), json);
+                    return 201;
+                }
+                if (path.length == 2 && method.equals("GET")) {
+                    requireOwner(exchange);
+                    writeCustomer(findCustomer(path[1]), json);
+                    return 200;
+                }
+                if (path.length == 2 && method.equals("DELETE")) {
+                    requireOwner(exchange);
+                    dataStore.removeCustomer(findCustomer(path[1]));
+                    return 204;
+                }
+                break;
+            default:
+                throw new ApiException(404, "Not found");
+        }
+        throw new ApiException(405, "Method not allowed");
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        String rest = path.length() > PREFIX.length() ? path.substring(PREFIX.length()) : "";
+        if (rest.endsWith("/")) {
+            rest = rest.substring(0, rest.length() - 1);
+        }
+        if (rest.isEmpty()) {
+            return new String[0];
+        }
+        String[] segments = rest.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i], StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Bad " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String stringField(Map<String, Object> body, String name, boolean required) {
+        Object value = body.get(name);
+        if (value == null || (value instanceof String && ((String) value).trim().isEmpty())) {
+            if (required) {
+                throw new ApiException(400, "Missing " + name);
+            }
+            return null;
+        }
+        if (!(value instanceof String)) {
+            throw new ApiException(400, "Bad " + name);
+        }
+        String text = ((String) value).trim();
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isISOControl(text.charAt(i))) {
+                throw new ApiException(400, "Bad " + name + ": control characters are not allowed");
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Gets a string field that is stored in the data files, which cannot
+     * hold commas.
+     */
+    private static String recordField(Map<String, Object> body, String name, boolean required) {
+        String text = stringField(body, name, required);
+        if (!DataStore.isValidField(text)) {
+            throw new ApiException(400, "Bad " + name + ": commas are not allowed");
+        }
+        return text;
+    }
+
+    // Authentication
+
+    /**
+     * Gets the user of the request's session token, or else checks its
+     * Basic credentials.
+     *
+     * @throws ApiException 401 if there are none, or they are wrong or expired
+     */
+    private User authenticate(HttpExchange exchange) {
+        String token = bearerToken(exchange);
+        if (token != null) {
+            User user = authController.getCurrentUser(token);
+            if (user == null) {
+                throw new ApiException(401, "Session expired or unknown");
+            }
+            return user;
+        }
+        String[] credentials = basicCredentials(exchange);
+        if (credentials == null) {
+            throw new ApiException(401, "Authentication required");
+        }
+        return login(credentials[0], credentials[1], client(exchange));
+    }
+
+    /**
+     * Gets the token of a Bearer Authorization header, or null if the
+     * request has none.
+     */
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return header.substring(7).trim();
+    }
+
+    /**
+     * Gets the username and password of a Basic Authorization header, or
+     * null if the request has none.
+     *
+     * @throws ApiException 401 if the header is malformed
+     */
+    private static String[] basicCredentials(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        String credentials;
+        try {
+            credentials = new String(Base64.getDecoder().decode(header.substring(6).trim()),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(401, "Malformed credentials");
+        }
+        int colon = credentials.indexOf(':');
+        if (colon < 0) {
+            throw new ApiException(401, "Malformed credentials");
+        }
+        return new String[] {credentials.substring(0, colon), credentials.substring(colon + 1)};
+    }
+
+    private static User login(String username, String password, String client) {
+        AuthController authController = new AuthController(new Session());
+        if (!authController.login(username, password, client)) {
+            throw new ApiException(401, "Invalid username or password");
+        }
+        return authController.getCurrentUser();
+    }
+
+    /**
+     * Opens a session with the request's Basic credentials, or else with a
+     * JSON body of username and password.
+     *
+     * @return The token of the session
+     */
+    private String login(HttpExchange exchange) throws IOException {
+        String[] credentials = basicCredentials(exchange);
+        if (credentials == null) {
+            Map<String, Object> body = body(exchange);
+            credentials = new String[] {stringField(body, "username", true), stringField(body, "password", true)};
+        }
+        String token = authController.openSession(credentials[0], credentials[1], client(exchange));
+        if (token == null) {
+            throw new ApiException(401, "Invalid username or password");
+        }
+        return token;
+    }
+
+    /**
+     * Identifies the client of a request for login rate limiting.
+     */
+    private static String client(HttpExchange exchange) {
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    private void requireOwner(HttpExchange exchange) {
+        if (authenticate(exchange).getRole() != User.UserRole.OWNER) {
+            throw new ApiException(403, "Owner access required");
+        }
+    }
+
+    private Customer requireCustomer(HttpExchange exchange) {
+        User user = authenticate(exchange);
+        Customer customer = user.getRole() == User.UserRole.CUSTOMER
+                ? dataStore.findCustomerByUsername(user.getUsername()) : null;
+        if (customer == null) {
+            throw new ApiException(403, "Customer access required");
+        }
+        return customer;
+    }
+
+    // Books
+
+    private void listBooks(Map<String, String> query, Json json) {
+        int limit = Math.min(intParameter(query, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        String search = query.get("q");
+        json.beginObject();
+        if (search != null && !search.trim().isEmpty()) {
+            json.name("books").beginArray();
+            for (Book book : dataStore.searchBooks(search, Math.max(limit, 0))) {
+                writeBook(book, json);
+            }
+            json.endArray();
+        } else {
+            int offset = Math.max(intParameter(query, "offset", 0), 0);
+            json.field("total", dataStore.getBookCount());
+            json.name("books").beginArray();
+            for (int i = offset; i < offset + limit; i++) {
+                Book book = dataStore.getBookAt(i);
+                if (book == null) {
+                    break;
+                }
+                writeBook(book, json);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    private Book findBook(String id) {
+        Book book = dataStore.findBookById(id);
+        if (book == null) {
+            throw new ApiException(404, "No such book: " + id);
+        }
+        return book;
+    }
+
+    private Book addBook(Map<String, Object> body) {
+        String title = recordField(body, "title", true);
+        String author = recordField(body, "author", false);
+        long priceCents;
+        int quantity;
+        try {
+            priceCents = Money.parse(stringField(body, "price", true));
+            String quantityText = stringField(body, "quantity", false);
+            quantity = quantityText != null ? Integer.parseInt(quantityText) : 1;
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Bad price or quantity");
+        }
+        if (priceCents <= 0 || quantity < 0) {
+            throw new ApiException(400, "Price must be positive and quantity not negative");
+        }
+        if (dataStore.findBookByTitle(title) != null) {
+            throw new ApiException(409, "A book with this title already exists");
+        }
+
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor(author != null ? author : "");
+        book.setPriceCents(priceCents);
+        book.setQuantity(quantity);
+        dataStore.addBook(book);
+        return book;
+    }
+
+    private static void writeBook(Book book, Json json) {
+        json.beginObject()
+                .field("id", book.getId())
+                .field("title", book.getTitle())
+                .field("author", book.getAuthor())
+                .name("price").money(book.getPriceCents())
+                .field("quantity", book.getQuantity())
+                .endObject();
+    }
+
+    // Customers
+
+    private Customer findCustomer(String username) {
+        Customer customer = dataStore.findCustomerByUsername(username);
+        if (customer == null) {
+            throw new ApiException(404, "No such customer: " + username);
+        }
+        return customer;
+    }
+
+    private Customer addCustomer(Map<String, Object> body) {
+        String username = recordField(body, "username", true);
+        String password = stringField(body, "password", true);
+        String name = recordField(body, "name", false);
+        if (dataStore.findCustomerByUsername(username) != null) {
+            throw new ApiException(409, "A customer with this username already exists");
+        }
+
+        Customer customer = new Customer();
+        customer.setUsername(username);
+        customer.setPassword(password);
+        customer.setName(name != null ? name : username);
+        customer.setPurchaseHistory(new ArrayList<>());
+        dataStore.addCustomer(customer);
+        return customer;
+    }
+
+    private static void writeCustomer(Customer customer, Json json) {
+        int points = customer.getPoints();
+        json.beginObject()
+                .field("id", customer.getId())
+                .field("username", customer.getUsername())
+                .field("name", customer.getName())
+                .field("points", points)
+                .field("status", points >= 1000 ? "Gold" : "Silver")
+                .endObject();
+    }
+
+    private static void writePurchases(List<Purchase> purchases, Json json) {
+        json.beginArray();
+        for (Purchase purchase : purchases) {
+            writePurchase(purchase, json);
+        }
+        json.endArray();
+    }
+
+    private static void writePurchase(Purchase purchase, Json json) {
+        json.beginObject()
+                .field("id", purchase.getId())
+                .field("bookId", purchase.getBookId())
+                .field("bookTitle", purchase.getBookTitle())
+                .field("quantity", purchase.getQuantity())
+                .name("totalPrice").money(purchase.getTotalCents())
+                .field("date", purchase.getDate())
+                .endObject();
+    }
+
+    // Checkout
+
+    /**
+     * Buys one copy of each listed book for the customer through the
+     * checkout batcher: every book is taken out of stock or none is, and
+     * redeeming pays as much of the total as the customer's points cover.
+     */
+    private void checkout(Customer customer, Map<String, Object> body, Json json) {
+        Object ids = body.get("bookIds");
+        if (!(ids instanceof List) || ((List<?>) ids).isEmpty()) {
+            throw new ApiException(400, "Missing bookIds");
+        }
+        Cart cart = new Cart(customer).setRedeemPoints(Boolean.TRUE.equals(body.get("redeemPoints")));
+        for (Object id : (List<?>) ids) {
+            if (!(id instanceof String)) {
+                throw new ApiException(400, "Bad book id");
+            }
+            cart.add(findBook((String) id));
+        }
+
+        Receipt receipt = checkoutBatcher.checkout(cart);
+        if (receipt.getStatus() == Order.Status.OUT_OF_STOCK) {
+            throw new ApiException(409, "Some of the selected books are out of stock");
+        }
+        if (!receipt.isPlaced()) {
+            throw new ApiException(409, "Points balance changed, try again");
+        }
+
+        json.beginObject()
+                .name("total").money(receipt.getSubtotalCents())
+                .name("charged").money(receipt.getChargedCents())
+                .field("pointsRedeemed", receipt.getPointsRedeemed())
+                .field("points", receipt.getPoints())
+                .name("purchases");
+        writePurchases(receipt.getPurchases(), json);
+        json.endObject();
+    }
+}
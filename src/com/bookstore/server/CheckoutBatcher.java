@@ -0,0 +1,115 @@
+package com.bookstore.server;
+
+import com.bookstore.controller.Cart;
+import com.bookstore.controller.CheckoutService;
+import com.bookstore.controller.Receipt;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the checkouts of concurrent requests into batches for
+ * CheckoutService.checkoutAll, so many orders share one commit. A single
+ * thread places batches; carts arriving while it is busy wait for the next
+ * one, so batches grow with load and a lone checkout waits for no one.
+ */
+final class CheckoutBatcher implements Closeable {
+    private static final int MAX_BATCH = 256;
+    private static final long POLL_MILLIS = 100;
+
+    private static final class Pending {
+        final Cart cart;
+        final CompletableFuture<Receipt> receipt = new CompletableFuture<>();
+
+        Pending(Cart cart) {
+            this.cart = cart;
+        }
+    }
+
+    private final CheckoutService checkoutService;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    CheckoutBatcher(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+        this.thread = new Thread(this::run, "checkout");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks a cart out in the next batch and waits for its receipt.
+     */
+    Receipt checkout(Cart cart) {
+        Pending pending = new Pending(cart);
+        queue.add(pending);
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException("Server stopping");
+        }
+        try {
+            return pending.receipt.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking out", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error checking out", e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        List<Cart> carts = new ArrayList<>(MAX_BATCH);
+        while (!closed) {
+            Pending first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            for (Pending pending : batch) {
+                carts.add(pending.cart);
+            }
+            try {
+                List<Receipt> receipts = checkoutService.checkoutAll(carts);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).receipt.complete(receipts.get(i));
+                }
+            } catch (RuntimeException e) {
+                for (Pending pending : batch) {
+                    pending.receipt.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+            carts.clear();
+        }
+        // Fail checkouts still waiting, rather than leave their requests hanging
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            pending.receipt.completeExceptionally(new IllegalStateException("Server stopping"));
+        }
+    }
+
+    /**
+     * Stops placing batches once the current one is done. The thread is
+     * not interrupted, as that would close the journal's file channel under
+     * a batch being written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,343 @@
+package com.bookstore.server;
+
+import com.bookstore.model.Money;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and parses the JSON of the HTTP API. Writing appends straight to
+ * a StringBuilder; parsing produces Maps, Lists, Strings, Booleans and
+ * nulls, with numbers kept as their text so amounts can go through
+ * Money.parse without a detour through double.
+ */
+final class Json {
+    private final StringBuilder out;
+    // Whether the innermost open object or array needs a comma before its next element
+    private boolean comma;
+
+    Json() {
+        this(new StringBuilder(256));
+    }
+
+    Json(StringBuilder out) {
+        this.out = out;
+    }
+
+    Json beginObject() {
+        separate();
+        out.append('{');
+        comma = false;
+        return this;
+    }
+
+    Json endObject() {
+        out.append('}');
+        comma = true;
+        return this;
+    }
+
+    Json beginArray() {
+        separate();
+        out.append('[');
+        comma = false;
+        return this;
+    }
+
+    Json endArray() {
+        out.append(']');
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next field of an object.
+     */
+    Json name(String name) {
+        separate();
+        quote(name);
+        out.append(':');
+        comma = false;
+        return this;
+    }
+
+    Json value(String value) {
+        separate();
+        if (value == null) {
+            out.append("null");
+        } else {
+            quote(value);
+        }
+        comma = true;
+        return this;
+    }
+
+    Json value(long value) {
+        separate();
+        out.append(value);
+        comma = true;
+        return this;
+    }
+
+    Json value(boolean value) {
+        separate();
+        out.append(value);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Writes an amount of cents as a decimal number with two places.
+     */
+    Json money(long cents) {
+        separate();
+        Money.appendTo(out, cents);
+        comma = true;
+        return this;
+    }
+
+    Json field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    Json field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    Json field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    private void separate() {
+        if (comma) {
+            out.append(',');
+            comma = false;
+        }
+    }
+
+    private void quote(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    /**
+     * Parses a JSON object.
+     *
+     * @throws IllegalArgumentException if the text is not a JSON object
+     */
+    static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        parser.skipWhitespace();
+        if (parser.peek() != '{') {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) parser.parseValue();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON object");
+        }
+        return object;
+    }
+
+    private static final class Parser {
+        // Deeper nesting is refused rather than left to overflow the stack
+        private static final int MAX_DEPTH = 32;
+
+        private final String text;
+        private int position;
+        private int depth;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        char peek() {
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        void expect(char c) {
+            skipWhitespace();
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + position);
+            }
+            position++;
+        }
+
+        Object parseValue() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '{' || c == '[') {
+                if (++depth > MAX_DEPTH) {
+                    throw new IllegalArgumentException("JSON nested too deeply at " + position);
+                }
+                Object value = c == '{' ? parseObjectValue() : parseArrayValue();
+                depth--;
+                return value;
+            }
+            if (c == '"') {
+                return parseString();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            return parseNumber();
+        }
+
+        private Map<String, Object> parseObjectValue() {
+            position++;
+            Map<String, Object> object = new LinkedHashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipWhitespace();
+                String name = parseString();
+                expect(':');
+                object.put(name, parseValue());
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+            return object;
+        }
+
+        private List<Object> parseArrayValue() {
+            position++;
+            List<Object> array = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            do {
+                array.add(parseValue());
+                skipWhitespace();
+            } while (consume(','));
+            expect(']');
+            return array;
+        }
+
+        private boolean consume(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private String parseString() {
+            if (peek() != '"') {
+                throw new IllegalArgumentException("Expected a string at " + position);
+            }
+            position++;
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = peek();
+                position++;
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escape = peek();
+                position++;
+                switch (escape) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Unexpected end of JSON");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Bad escape at " + position);
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escape);
+                }
+            }
+        }
+
+        private String parseNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("Unexpected character at " + position);
+            }
+            return text.substring(start, position);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over book titles and authors for the search box.
+ *
+ * Titles and authors are split into tokens at anything that is not a
+ * letter or digit and lower-cased. Every query token matches as a prefix, so
+ * "harr pot" finds "Harry Potter" while it is being typed; a book must
+ * match all query tokens. Terms are kept sorted, so a prefix is a range of
+ * the term map.
+ *
+ * Each indexed book gets a dense document number and each term a sorted
+ * array of them. Removing a book only clears its document slot; the
+ * postings are rebuilt once removed books outnumber the live ones.
+ *
+ * Searches share a read lock and run concurrently with each other;
+ * changes take the write lock.
+ */
+public class BookSearchIndex {
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Book, Integer> documents = new IdentityHashMap<>();
+    private Book[] books = new Book[64];
+    private String[][] titleTokens = new String[64][];
+    private String[][] authorTokens = new String[64][];
+    private int documentCount;
+    private int removed;
+
+    /**
+     * Growable sorted array of document numbers.
+     */
+    private static final class Postings {
+        int[] documents = new int[4];
+        int size;
+
+        void add(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+    }
+
+    /**
+     * A candidate result and its score, for the top-k heap.
+     */
+    private static final class Match {
+        final int document;
+        final int score;
+
+        Match(int document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Adds a book, or re-indexes it if its title or author changed.
+     */
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(book);
+            int document = documentCount++;
+            if (document == books.length) {
+                books = Arrays.copyOf(books, document * 2);
+                titleTokens = Arrays.copyOf(titleTokens, document * 2);
+                authorTokens = Arrays.copyOf(authorTokens, document * 2);
+            }
+            books[document] = book;
+            titleTokens[document] = tokenize(book.getTitle());
+            authorTokens[document] = tokenize(book.getAuthor());
+            documents.put(book, document);
+            post(document, titleTokens[document]);
+            post(document, authorTokens[document]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the index.
+     */
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(book);
+            if (removed > documents.size() && removed > 1024) {
+                List<Book> live = new ArrayList<>(documents.size());
+                for (int i = 0; i < documentCount; i++) {
+                    if (books[i] != null) {
+                        live.add(books[i]);
+                    }
+                }
+                rebuild(live);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole index with the given books.
+     */
+    public void rebuild(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            documents.clear();
+            this.books = new Book[Math.max(64, books.size())];
+            this.titleTokens = new String[this.books.length][];
+            this.authorTokens = new String[this.books.length][];
+            documentCount = 0;
+            removed = 0;
+            for (Book book : books) {
+                add(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeDocument(Book book) {
+        Integer document = documents.remove(book);
+        if (document != null) {
+            books[document] = null;
+            titleTokens[document] = null;
+            authorTokens[document] = null;
+            removed++;
+        }
+    }
+
+    private void post(int document, String[] tokens) {
+        for (String token : tokens) {
+            Postings postings = terms.computeIfAbsent(token, term -> new Postings());
+            // Documents are posted in order, so a repeated token is the last entry
+            if (postings.size == 0 || postings.documents[postings.size - 1] != document) {
+                postings.add(document);
+            }
+        }
+    }
+
+    /**
+     * Finds the books matching every token of the query, best first. Books
+     * whose title matches rank above those matched only by author, and
+     * whole-word matches above prefix matches; ties go to the book indexed
+     * first.
+     *
+     * @param limit The maximum number of results
+     * @return The matching books, or an empty list for a blank query
+     */
+    public List<Book> search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Walk the postings of the rarest token and check the others
+            // against each candidate's own tokens
+            Collection<Postings> driver = null;
+            long driverSize = Long.MAX_VALUE;
+            int bestScore = 0;
+            for (String token : tokens) {
+                Collection<Postings> postings = terms.subMap(token, true, token + Character.MAX_VALUE, false).values();
+                long size = 0;
+                for (Iterator<Postings> i = postings.iterator(); i.hasNext() && size < driverSize; ) {
+                    size += i.next().size;
+                }
+                if (size < driverSize) {
+                    driver = postings;
+                    driverSize = size;
+                }
+                bestScore += terms.containsKey(token) ? 4 : 2;
+            }
+
+            // Candidates come in document order, so once every kept match has
+            // the best possible score no later book can displace one
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, BookSearchIndex::compareMatches);
+            PostingsMerge candidates = new PostingsMerge(driver);
+            for (int document = candidates.next(); document >= 0; document = candidates.next()) {
+                if (books[document] == null) {
+                    continue;
+                }
+                int score = score(document, tokens);
+                if (score > 0) {
+                    best.add(new Match(document, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                    if (best.size() == limit && best.peek().score == bestScore) {
+                        break;
+                    }
+                }
+            }
+
+            Book[] results = new Book[best.size()];
+            for (int i = results.length - 1; i >= 0; i--) {
+                results[i] = books[best.poll().document];
+            }
+            return new ArrayList<>(Arrays.asList(results));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the postings of the terms sharing a prefix into one ascending
+     * stream of distinct document numbers.
+     */
+    private static final class PostingsMerge {
+        private final PriorityQueue<int[]> heads;
+        private final Postings[] postings;
+        private int last = -1;
+
+        PostingsMerge(Collection<Postings> terms) {
+            postings = terms.toArray(new Postings[0]);
+            // Each head is {next document, postings index, position}
+            heads = new PriorityQueue<>(Math.max(1, postings.length), Comparator.comparingInt(head -> head[0]));
+            for (int i = 0; i < postings.length; i++) {
+                if (postings[i].size > 0) {
+                    heads.add(new int[] {postings[i].documents[0], i, 0});
+                }
+            }
+        }
+
+        /**
+         * Gets the next document, or -1 at the end.
+         */
+        int next() {
+            while (!heads.isEmpty()) {
+                int[] head = heads.poll();
+                int document = head[0];
+                Postings source = postings[head[1]];
+                if (++head[2] < source.size) {
+                    head[0] = source.documents[head[2]];
+                    heads.add(head);
+                }
+                if (document != last) {
+                    last = document;
+                    return document;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Scores a document against every query token, or 0 if any is missing.
+     */
+    private int score(int document, String[] tokens) {
+        int score = 0;
+        for (String token : tokens) {
+            int title = match(titleTokens[document], token);
+            int author = match(authorTokens[document], token);
+            if (title == 0 && author == 0) {
+                return 0;
+            }
+            score += Math.max(title * 2, author);
+        }
+        return score;
+    }
+
+    /**
+     * Gets 2 if a token equals the query token, 1 if one starts with it,
+     * otherwise 0.
+     */
+    private static int match(String[] tokens, String token) {
+        int match = 0;
+        for (String candidate : tokens) {
+            if (candidate.startsWith(token)) {
+                if (candidate.length() == token.length()) {
+                    return 2;
+                }
+                match = 1;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Orders matches worst first, so the heap head is the one to drop.
+     */
+    private static int compareMatches(Match a, Match b) {
+        if (a.score != b.score) {
+            return Integer.compare(a.score, b.score);
+        }
+        return Integer.compare(b.document, a.document);
+    }
+
+    /**
+     * Gets the number of books in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits text into lower-case tokens of letters and digits.
+     */
+    static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_TOKENS;
+        }
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens.toArray(NO_TOKENS);
+    }
+}
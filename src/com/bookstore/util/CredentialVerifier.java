@@ -0,0 +1,229 @@
+package com.bookstore.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks passwords against PasswordHasher hashes without letting a burst
+ * of logins take over the machine. Hashing runs on a fixed pool of threads
+ * behind a bounded queue; once the queue is full further logins are
+ * refused with a RejectedExecutionException, which a server can answer with
+ * 503, instead of queueing ever longer.
+ *
+ * A successful check is remembered for a short while, so a client sending
+ * the same credentials again, such as one using Basic authentication on
+ * every request, costs one SHA-256 instead of a full PBKDF2. What is
+ * remembered is a digest of the password together with the stored hash,
+ * so changing the password forgets it.
+ */
+public class CredentialVerifier {
+    private static final class Verified {
+        final byte[] digest;
+        final long expires;
+
+        Verified(byte[] digest, long expires) {
+            this.digest = digest;
+            this.expires = expires;
+        }
+    }
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final long cacheNanos;
+    private final int cacheEntries;
+    private final Map<String, Verified> verified = new ConcurrentHashMap<>();
+    // Checked in place of the hash of a user who does not exist
+    private final String dummyHash;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructor. Hashing threads are started as they are first needed.
+     *
+     * @param iterations The iterations of new hashes
+     * @param threads The number of hashes computed at once
+     * @param queueCapacity The number of logins that may wait for a hashing thread
+     * @param cacheMillis How long a successful check is remembered, or 0 for not at all
+     * @param cacheEntries The most checks remembered at once
+     */
+    public CredentialVerifier(int iterations, int threads, int queueCapacity, long cacheMillis, int cacheEntries) {
+        this.iterations = iterations;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMillis);
+        this.cacheEntries = cacheEntries;
+        this.dummyHash = PasswordHasher.hash("", iterations);
+    }
+
+    /**
+     * Checks a user's password against their stored password.
+     *
+     * @throws RejectedExecutionException if too many logins are already waiting
+     */
+    public boolean verify(String username, String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!PasswordHasher.isHashed(stored)) {
+            // Plain text is never accepted; hashed all the same, so such accounts do not stand out
+            verifyMissing(password);
+            return false;
+        }
+        byte[] digest = null;
+        if (cacheNanos > 0) {
+            digest = digest(password, stored);
+            if (isRemembered(username, digest)) {
+                cacheHits.increment();
+                return true;
+            }
+        }
+        boolean matches = run(() -> PasswordHasher.verify(password, stored));
+        if (matches && digest != null) {
+            remember(username, digest);
+        }
+        return matches;
+    }
+
+    /**
+     * Checks a password for a user who does not exist, against a fixed hash
+     * with the configured iterations, so that the time a login takes does
+     * not tell whether the username exists. The check always fails.
+     *
+     * @throws RejectedExecutionException if too many logins are already waiting
+     */
+    public void verifyMissing(String password) {
+        if (password != null) {
+            run(() -> PasswordHasher.verify(password, dummyHash));
+        }
+    }
+
+    /**
+     * Checks if a password was recently verified against the same stored
+     * hash, in which case verify answers without hashing.
+     */
+    public boolean isRemembered(String username, String password, String stored) {
+        return cacheNanos > 0 && password != null && PasswordHasher.isHashed(stored)
+                && isRemembered(username, digest(password, stored));
+    }
+
+    private boolean isRemembered(String username, byte[] digest) {
+        Verified entry = verified.get(username);
+        return entry != null && System.nanoTime() - entry.expires < 0 && MessageDigest.isEqual(entry.digest, digest);
+    }
+
+    /**
+     * Hashes a password with the configured iterations.
+     *
+     * @throws RejectedExecutionException if too many logins are already waiting
+     */
+    public String hash(String password) {
+        return run(() -> PasswordHasher.hash(password, iterations));
+    }
+
+    /**
+     * Checks if a stored password is plain text or hashed with fewer
+     * iterations than configured.
+     */
+    public boolean needsRehash(String stored) {
+        return PasswordHasher.iterationsOf(stored) < iterations;
+    }
+
+    /**
+     * Forgets a user's successful checks.
+     */
+    public void forget(String username) {
+        verified.remove(username);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw e;
+        }
+        hashes.increment();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error hashing a password", e.getCause());
+        }
+    }
+
+    private void remember(String username, byte[] digest) {
+        long now = System.nanoTime();
+        if (verified.size() >= cacheEntries) {
+            verified.values().removeIf(entry -> now - entry.expires >= 0);
+            if (verified.size() >= cacheEntries) {
+                return;
+            }
+        }
+        verified.put(username, new Verified(digest, now + cacheNanos));
+    }
+
+    private static byte[] digest(String password, String stored) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(stored.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public long getHashes() {
+        return hashes.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Stops the hashing threads once queued work is done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialVerifier{" +
+                "iterations=" + iterations +
+                ", hashes=" + getHashes() +
+                ", cacheHits=" + getCacheHits() +
+                ", rejections=" + getRejections() +
+                '}';
+    }
+}
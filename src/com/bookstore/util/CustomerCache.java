@@ -0,0 +1,384 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Customer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of customers by username and by id, in front of a Source
+ * that loads them. Customers are evicted least recently used first once
+ * the cache holds more than maxEntries of them, or once their combined
+ * weight, the number of purchases in their histories, passes maxWeight; one
+ * customer with a huge history therefore pushes out many small ones.
+ *
+ * The cache is split into segments by customer id, each with its own LRU
+ * order, lock and share of the bounds, so concurrent lookups of different
+ * customers rarely wait for one another. The username index is a concurrent
+ * map shared by the segments; a hit through it locks only the segment of
+ * the customer found.
+ *
+ * A customer changed without going through the source can be marked
+ * dirty; it is handed back to the source's writeBack when it is evicted or
+ * the cache is flushed. Lookups that find nothing are not cached, so a
+ * customer added to the source is found by the next lookup.
+ */
+public class CustomerCache {
+    /**
+     * Where the cache loads customers from and writes dirty ones back to.
+     */
+    public interface Source {
+        /**
+         * @return The customer, or null if there is none
+         */
+        Customer loadByUsername(String username);
+
+        /**
+         * @return The customer, or null if there is none
+         */
+        Customer loadById(String id);
+
+        /**
+         * Stores the changes made to an evicted or flushed customer.
+         */
+        void writeBack(Customer customer);
+    }
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private static final class Entry {
+        final Customer customer;
+        final String username;
+        long weight;
+        boolean dirty;
+
+        Entry(Customer customer) {
+            this.customer = customer;
+            this.username = customer.getUsername();
+            this.weight = weightOf(customer);
+        }
+    }
+
+    /**
+     * The customers whose ids hash to one segment, least recently used
+     * first. Guarded by its own monitor.
+     */
+    private static final class Segment {
+        final LinkedHashMap<String, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+    }
+
+    private final Source source;
+    private final int segmentEntries;
+    private final long segmentWeight;
+    private final Segment[] segments;
+    // Shares the entries of the segments; only changed under the segment lock of the entry's id
+    private final ConcurrentHashMap<String, Entry> byUsername = new ConcurrentHashMap<>();
+    // Incremented before entries are dropped, so loads that raced with it are not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries The most customers to hold
+     * @param maxWeight The most purchases, over all held customers, to hold
+     */
+    public CustomerCache(Source source, int maxEntries, long maxWeight) {
+        this.source = source;
+        // A power of two, and no more segments than entries so the bound still holds
+        int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, Math.max(1, maxEntries)));
+        this.segmentEntries = Math.max(1, maxEntries) / count;
+        this.segmentWeight = Math.max(1, maxWeight / count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentFor(String id) {
+        int hash = id.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Gets a customer by username, loading it from the source on a miss.
+     *
+     * @return The customer, or null if there is none
+     */
+    public Customer getByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        long invalidated = invalidations.get();
+        Entry entry = byUsername.get(username);
+        if (entry != null) {
+            Segment segment = segmentFor(entry.customer.getId());
+            synchronized (segment) {
+                // Touch the entry's place in the LRU order, unless it was evicted meanwhile
+                if (segment.byId.get(entry.customer.getId()) == entry) {
+                    return hit(segment, entry);
+                }
+            }
+        }
+        misses.increment();
+        Customer customer = source.loadByUsername(username);
+        if (customer != null) {
+            add(customer, invalidated);
+        }
+        return customer;
+    }
+
+    /**
+     * Gets a customer by id, loading it from the source on a miss.
+     *
+     * @return The customer, or null if there is none
+     */
+    public Customer getById(String id) {
+        if (id == null) {
+            return null;
+        }
+        long invalidated = invalidations.get();
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            Entry entry = segment.byId.get(id);
+            if (entry != null) {
+                return hit(segment, entry);
+            }
+        }
+        misses.increment();
+        Customer customer = source.loadById(id);
+        if (customer != null) {
+            add(customer, invalidated);
+        }
+        return customer;
+    }
+
+    /**
+     * Follows a hit entry's history; the caller holds the segment's lock
+     * and has already touched the entry.
+     */
+    private Customer hit(Segment segment, Entry entry) {
+        long current = weightOf(entry.customer);
+        segment.weight += current - entry.weight;
+        entry.weight = current;
+        hits.increment();
+        return entry.customer;
+    }
+
+    /**
+     * Adds a customer, evicting others if that takes the cache over its
+     * bounds.
+     */
+    public void put(Customer customer) {
+        add(customer, -1);
+    }
+
+    /**
+     * Adds a customer unless an invalidation has happened since the given
+     * count was read; -1 adds it regardless.
+     */
+    private void add(Customer customer, long invalidated) {
+        if (customer.getId() == null) {
+            return;
+        }
+        List<Entry> evicted;
+        Segment segment = segmentFor(customer.getId());
+        synchronized (segment) {
+            if (invalidated >= 0 && invalidated != invalidations.get()) {
+                return;
+            }
+            Entry entry = new Entry(customer);
+            Entry previous = segment.byId.put(customer.getId(), entry);
+            if (previous != null) {
+                unlink(segment, previous);
+                entry.dirty = previous.dirty;
+            }
+            if (entry.username != null) {
+                byUsername.put(entry.username, entry);
+            }
+            segment.weight += entry.weight;
+            evicted = evict(segment);
+        }
+        writeBack(evicted);
+    }
+
+    /**
+     * Marks a cached customer as changed, so it is written back to the
+     * source when it leaves the cache.
+     */
+    public void markDirty(Customer customer) {
+        if (customer.getId() == null) {
+            return;
+        }
+        Segment segment = segmentFor(customer.getId());
+        synchronized (segment) {
+            Entry entry = segment.byId.get(customer.getId());
+            if (entry != null && entry.customer == customer) {
+                entry.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Drops a customer without writing it back, for one that was removed
+     * from the source.
+     */
+    public void invalidate(Customer customer) {
+        invalidations.incrementAndGet();
+        if (customer.getId() == null) {
+            return;
+        }
+        Segment segment = segmentFor(customer.getId());
+        synchronized (segment) {
+            Entry entry = segment.byId.get(customer.getId());
+            if (entry != null && entry.customer == customer) {
+                segment.byId.remove(customer.getId());
+                unlink(segment, entry);
+            }
+        }
+    }
+
+    /**
+     * Drops every customer without writing any back, for when the source
+     * has been replaced.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.byId.values()) {
+                    unlink(segment, entry);
+                }
+                segment.byId.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes every dirty customer back to the source, keeping them cached.
+     */
+    public void flush() {
+        List<Entry> dirty = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.byId.values()) {
+                    if (entry.dirty) {
+                        entry.dirty = false;
+                        dirty.add(entry);
+                    }
+                }
+            }
+        }
+        writeBack(dirty);
+    }
+
+    /**
+     * Removes an entry from the username index and its segment's weight;
+     * the caller holds the segment's lock and has removed it from byId.
+     */
+    private void unlink(Segment segment, Entry entry) {
+        if (entry.username != null) {
+            byUsername.remove(entry.username, entry);
+        }
+        segment.weight -= entry.weight;
+    }
+
+    /**
+     * Removes a segment's least recently used entries until it is within
+     * its share of the bounds, always keeping the most recent one.
+     *
+     * @return The evicted entries that are dirty
+     */
+    private List<Entry> evict(Segment segment) {
+        List<Entry> dirty = null;
+        Iterator<Entry> eldest = segment.byId.values().iterator();
+        while ((segment.byId.size() > segmentEntries || segment.weight > segmentWeight) && segment.byId.size() > 1) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            unlink(segment, entry);
+            evictions.increment();
+            if (entry.dirty) {
+                if (dirty == null) {
+                    dirty = new ArrayList<>();
+                }
+                dirty.add(entry);
+            }
+        }
+        return dirty;
+    }
+
+    private void writeBack(List<Entry> entries) {
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            source.writeBack(entry.customer);
+            writeBacks.increment();
+        }
+    }
+
+    private static long weightOf(Customer customer) {
+        return customer.getPurchaseHistory() != null ? customer.getPurchaseHistory().size() : 0;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.byId.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the combined weight of the cached customers.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getWriteBacks() {
+        return writeBacks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerCache{" +
+                "size=" + size() +
+                ", weight=" + getWeight() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", writeBacks=" + getWriteBacks() +
+                '}';
+    }
+}
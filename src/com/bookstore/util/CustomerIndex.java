@@ -0,0 +1,570 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Customer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * On-disk B+-tree locating customer records in customers.txt, so a single
+ * customer can be read without parsing the file. Each customer has two
+ * keys, "u:" + username and "i:" + id, mapped to the offset and length of
+ * their record.
+ *
+ * The file is a sequence of PAGE_SIZE pages read through memory mappings:
+ * a header page, then the leaves in key order, then each level of branch
+ * pages up to the root. Keys are compared as unsigned UTF-8 bytes. The
+ * tree is only ever bulk-loaded from a sorted run of keys; it is rebuilt,
+ * never updated, when customers.txt is rewritten. The header records the
+ * size and modification time of the customer file it was built from, so
+ * an index left behind by an older file is detected as stale.
+ */
+final class CustomerIndex implements Closeable {
+    static final String FILE_NAME = "customers.idx";
+
+    private static final int MAGIC = 0x42505431;
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 4096;
+    // Pages never straddle a mapping, since this is a multiple of PAGE_SIZE
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int PAGE_HEADER = 8;
+    private static final int MAX_KEY_LENGTH = 1024;
+    private static final int RUN_ENTRIES = 1 << 19;
+
+    private static final byte LEAF = 1;
+    private static final byte BRANCH = 2;
+
+    private static final String USERNAME_KEY = "u:";
+    private static final String ID_KEY = "i:";
+
+    /**
+     * Where a customer's record is in the customer file.
+     */
+    static final class Location {
+        final long offset;
+        final int length;
+
+        Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer[] segments;
+    private final int rootPage;
+    private final int height;
+    private final long entryCount;
+
+    private CustomerIndex(FileChannel channel, ByteBuffer[] segments, int rootPage, int height, long entryCount) {
+        this.channel = channel;
+        this.segments = segments;
+        this.rootPage = rootPage;
+        this.height = height;
+        this.entryCount = entryCount;
+    }
+
+    static String usernameKey(String username) {
+        return USERNAME_KEY + username;
+    }
+
+    static String idKey(String id) {
+        return ID_KEY + id;
+    }
+
+    /**
+     * Opens the index of a customer file.
+     *
+     * @return The index, or null if it is missing, unreadable or was built
+     *         from a different version of the customer file
+     */
+    static CustomerIndex open(Path indexFile, Path customersFile) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(indexFile, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            long size = channel.size();
+            if (size < PAGE_SIZE || size % PAGE_SIZE != 0) {
+                return closeStale(channel);
+            }
+            ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER * 8);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != PAGE_SIZE) {
+                return closeStale(channel);
+            }
+            int rootPage = header.getInt();
+            int height = header.getInt();
+            long entryCount = header.getLong();
+            long sourceSize = header.getLong();
+            long sourceModified = header.getLong();
+            if (sourceSize != Files.size(customersFile)
+                    || sourceModified != Files.getLastModifiedTime(customersFile).toMillis()
+                    || rootPage <= 0 || (long) rootPage * PAGE_SIZE >= size) {
+                return closeStale(channel);
+            }
+
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+            return new CustomerIndex(channel, segments, rootPage, height, entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static CustomerIndex closeStale(FileChannel channel) throws IOException {
+        channel.close();
+        return null;
+    }
+
+    /**
+     * Finds a customer by username.
+     *
+     * @return Where their record is, or null if the index has no such customer
+     */
+    Location findUsername(String username) {
+        return find(usernameKey(username).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Finds a customer by id.
+     *
+     * @return Where their record is, or null if the index has no such customer
+     */
+    Location findId(String id) {
+        return find(idKey(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Location find(byte[] key) {
+        if (key.length > MAX_KEY_LENGTH) {
+            return null;
+        }
+        int page = rootPage;
+        for (int level = 1; level < height; level++) {
+            page = child(page, key);
+        }
+
+        ByteBuffer buffer = segment(page);
+        int base = pageStart(page);
+        int count = buffer.getShort(base + 2) & 0xffff;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = base + (buffer.getShort(base + PAGE_HEADER + middle * 2) & 0xffff);
+            int comparison = compare(key, buffer, entry);
+            if (comparison == 0) {
+                int keyLength = buffer.getShort(entry) & 0xffff;
+                return new Location(buffer.getLong(entry + 2 + keyLength), buffer.getInt(entry + 10 + keyLength));
+            }
+            if (comparison < 0) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Picks the child of a branch page whose keys cover the given key: the
+     * one after the last separator not greater than it.
+     */
+    private int child(int page, byte[] key) {
+        ByteBuffer buffer = segment(page);
+        int base = pageStart(page);
+        int count = buffer.getShort(base + 2) & 0xffff;
+        int child = buffer.getInt(base + 4);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = base + (buffer.getShort(base + PAGE_HEADER + middle * 2) & 0xffff);
+            if (compare(key, buffer, entry) >= 0) {
+                child = buffer.getInt(entry + 2 + (buffer.getShort(entry) & 0xffff));
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return child;
+    }
+
+    private ByteBuffer segment(int page) {
+        return segments[(int) ((long) page * PAGE_SIZE / SEGMENT_SIZE)];
+    }
+
+    private static int pageStart(int page) {
+        return (int) ((long) page * PAGE_SIZE % SEGMENT_SIZE);
+    }
+
+    /**
+     * Compares a key with the length-prefixed key stored at a position.
+     */
+    private static int compare(byte[] key, ByteBuffer buffer, int entry) {
+        int length = buffer.getShort(entry) & 0xffff;
+        int common = Math.min(key.length, length);
+        for (int i = 0; i < common; i++) {
+            int difference = (key[i] & 0xff) - (buffer.get(entry + 2 + i) & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return key.length - length;
+    }
+
+    /**
+     * Gets the number of keys, two per indexed customer.
+     */
+    long size() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the number of pages read by a lookup.
+     */
+    int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Builds the index of a customer file, replacing any existing one. The
+     * keys are sorted in runs that are spilled beside the index when there
+     * are too many to hold, so building needs memory for one run rather
+     * than for every customer.
+     *
+     * @throws IOException if the customer file changes while it is read,
+     *         or a username or id is too long to index
+     */
+    static void build(Path indexFile, Path customersFile, boolean mapped) throws IOException {
+        long sourceSize = Files.size(customersFile);
+        long sourceModified = Files.getLastModifiedTime(customersFile).toMillis();
+
+        List<Path> runs = new ArrayList<>();
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            List<Entry> run = new ArrayList<>();
+            try (RecordReader reader = new RecordReader(customersFile, mapped)) {
+                Customer customer = null;
+                long recordStart = 0;
+                while (reader.nextLine()) {
+                    if (!reader.startsWith(FileIO.CUSTOMER_PREFIX)) {
+                        continue;
+                    }
+                    long offset = reader.lineOffset();
+                    if (customer != null) {
+                        addKeys(run, customer, recordStart, offset);
+                    }
+                    customer = FileIO.parseCustomer(reader, reader.lineStart() + FileIO.CUSTOMER_PREFIX.length,
+                            reader.lineEnd());
+                    recordStart = offset;
+                    if (run.size() >= RUN_ENTRIES) {
+                        runs.add(spill(indexFile, run));
+                        run.clear();
+                    }
+                }
+                if (customer != null) {
+                    addKeys(run, customer, recordStart, sourceSize);
+                }
+            }
+            if (sourceSize != Files.size(customersFile)
+                    || sourceModified != Files.getLastModifiedTime(customersFile).toMillis()) {
+                throw new IOException("Customer file changed while it was indexed");
+            }
+
+            run.sort(Entry.ORDER);
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Builder builder = new Builder(out);
+                if (runs.isEmpty()) {
+                    for (Entry entry : run) {
+                        builder.add(entry);
+                    }
+                } else {
+                    runs.add(spill(indexFile, run));
+                    merge(runs, builder);
+                }
+                builder.finish(sourceSize, sourceModified);
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            for (Path path : runs) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void addKeys(List<Entry> run, Customer customer, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Customer record too long to index: " + customer.getId());
+        }
+        run.add(new Entry(usernameKey(customer.getUsername()), start, (int) (end - start)));
+        run.add(new Entry(idKey(customer.getId()), start, (int) (end - start)));
+    }
+
+    /**
+     * Sorts a run and writes it to a temporary file beside the index.
+     */
+    private static Path spill(Path indexFile, List<Entry> run) throws IOException {
+        run.sort(Entry.ORDER);
+        Path path = Files.createTempFile(indexFile.toAbsolutePath().getParent(), FILE_NAME + ".", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            for (Entry entry : run) {
+                out.writeShort(entry.key.length);
+                out.write(entry.key);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Merges sorted runs into the builder in key order.
+     */
+    private static void merge(List<Path> runs, Builder builder) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.<RunReader, Entry>comparing(reader -> reader.current, Entry.ORDER));
+        try {
+            for (Path path : runs) {
+                RunReader reader = new RunReader(path);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                builder.add(reader.current);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    private static final class Entry {
+        // Equal keys are ordered by offset, so the last record with a key wins as it does on load
+        static final Comparator<Entry> ORDER = (a, b) -> {
+            int comparison = Arrays.compareUnsigned(a.key, b.key);
+            return comparison != 0 ? comparison : Long.compare(a.offset, b.offset);
+        };
+
+        final byte[] key;
+        final long offset;
+        final int length;
+
+        Entry(String key, long offset, int length) throws IOException {
+            this(key.getBytes(StandardCharsets.UTF_8), offset, length);
+            if (this.key.length > MAX_KEY_LENGTH) {
+                throw new IOException("Key too long to index: " + key);
+            }
+        }
+
+        Entry(byte[] key, long offset, int length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        Entry current;
+
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readUnsignedShort();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            byte[] key = new byte[length];
+            in.readFully(key);
+            current = new Entry(key, in.readLong(), in.readInt());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a tree bottom-up from entries given in key order: leaves as
+     * they fill, then each branch level from the first keys of the level
+     * below.
+     */
+    private static final class Builder {
+        private final FileChannel out;
+        private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        private final List<Entry> leaf = new ArrayList<>();
+        private int leafBytes = PAGE_HEADER;
+        private Entry pending;
+        private int nextPage = 1;
+        private long entryCount;
+        // First key and page number of each page of the level being built
+        private final List<byte[]> firstKeys = new ArrayList<>();
+        private final List<Integer> pages = new ArrayList<>();
+
+        Builder(FileChannel out) {
+            this.out = out;
+        }
+
+        void add(Entry entry) throws IOException {
+            // Of several records with one key, only the last is kept
+            if (pending != null && !Arrays.equals(pending.key, entry.key)) {
+                addToLeaf(pending);
+            }
+            pending = entry;
+        }
+
+        private void addToLeaf(Entry entry) throws IOException {
+            int size = 2 + 2 + entry.key.length + 12;
+            if (leafBytes + size > PAGE_SIZE) {
+                writeLeaf(nextPage + 1);
+            }
+            leaf.add(entry);
+            leafBytes += size;
+            entryCount++;
+        }
+
+        private void writeLeaf(int next) throws IOException {
+            page.clear();
+            page.put(LEAF).put((byte) 0).putShort((short) leaf.size()).putInt(next);
+            int position = PAGE_HEADER + leaf.size() * 2;
+            for (int i = 0; i < leaf.size(); i++) {
+                Entry entry = leaf.get(i);
+                page.putShort(PAGE_HEADER + i * 2, (short) position);
+                page.position(position);
+                page.putShort((short) entry.key.length).put(entry.key).putLong(entry.offset).putInt(entry.length);
+                position = page.position();
+            }
+            firstKeys.add(leaf.isEmpty() ? new byte[0] : leaf.get(0).key);
+            pages.add(writePage());
+            leaf.clear();
+            leafBytes = PAGE_HEADER;
+        }
+
+        private int writePage() throws IOException {
+            int number = nextPage++;
+            page.position(0).limit(PAGE_SIZE);
+            long position = (long) number * PAGE_SIZE;
+            while (page.hasRemaining()) {
+                position += out.write(page, position);
+            }
+            Arrays.fill(page.array(), (byte) 0);
+            page.clear();
+            return number;
+        }
+
+        /**
+         * Writes the last leaf, the branch levels and the header.
+         */
+        void finish(long sourceSize, long sourceModified) throws IOException {
+            if (pending != null) {
+                addToLeaf(pending);
+                pending = null;
+            }
+            writeLeaf(-1);
+
+            int height = 1;
+            List<byte[]> levelKeys = new ArrayList<>(firstKeys);
+            List<Integer> levelPages = new ArrayList<>(pages);
+            while (levelPages.size() > 1) {
+                firstKeys.clear();
+                pages.clear();
+                writeBranches(levelKeys, levelPages);
+                levelKeys = new ArrayList<>(firstKeys);
+                levelPages = new ArrayList<>(pages);
+                height++;
+            }
+
+            page.clear();
+            page.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(levelPages.get(0)).putInt(height)
+                    .putLong(entryCount).putLong(sourceSize).putLong(sourceModified);
+            page.position(0).limit(PAGE_SIZE);
+            long position = 0;
+            while (page.hasRemaining()) {
+                position += out.write(page, position);
+            }
+            out.force(true);
+        }
+
+        /**
+         * Packs one level of pages under as few branch pages as fit. Each
+         * branch holds its first child's page and a separator key for each
+         * further child.
+         */
+        private void writeBranches(List<byte[]> keys, List<Integer> children) throws IOException {
+            int first = 0;
+            while (first < children.size()) {
+                int bytes = PAGE_HEADER;
+                int end = first + 1;
+                while (end < children.size() && bytes + 2 + 2 + keys.get(end).length + 4 <= PAGE_SIZE) {
+                    bytes += 2 + 2 + keys.get(end).length + 4;
+                    end++;
+                }
+
+                page.clear();
+                int count = end - first - 1;
+                page.put(BRANCH).put((byte) 0).putShort((short) count).putInt(children.get(first));
+                int position = PAGE_HEADER + count * 2;
+                for (int i = 0; i < count; i++) {
+                    byte[] key = keys.get(first + 1 + i);
+                    page.putShort(PAGE_HEADER + i * 2, (short) position);
+                    page.position(position);
+                    page.putShort((short) key.length).put(key).putInt(children.get(first + 1 + i));
+                    position = page.position();
+                }
+                firstKeys.add(keys.get(first));
+                pages.add(writePage());
+                first = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Purchase;
+
+import java.util.List;
+
+/**
+ * Supplies what to save for each customer of a list, by position, so a
+ * point-in-time view can be saved while the customers keep changing.
+ */
+public interface CustomerRecords {
+
+    /**
+     * Gets the purchases to save for the customer at the given index.
+     */
+    List<Purchase> purchasesOf(int index);
+
+    /**
+     * Gets the points balance to save for the customer at the given index.
+     */
+    int pointsOf(int index);
+}
@@ -1,21 +1,172 @@
-
 package com.bookstore.util;
 
 import com.bookstore.model.Book;
+import com.bookstore.model.ColumnarPurchaseStore;
 import com.bookstore.model.Customer;
+import com.bookstore.model.OffHeapPurchaseStore;
+import com.bookstore.model.Order;
+import com.bookstore.model.Purchase;
+import com.bookstore.model.PurchaseStore;
+import com.bookstore.model.Session;
+import com.bookstore.model.StoredPurchaseHistory;
 import com.bookstore.model.User;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 
 /**
  * Manages data storage and retrieval for the bookstore application.
+ *
+ * The store is shared by every session and is safe for concurrent use.
+ * Lookups go straight to concurrent indexes; changes to the book and
+ * customer lists take a read-write lock, and changes to one customer's
+ * purchases take one of a fixed set of locks chosen by customer id.
  */
 public class DataStore {
+    /** System property that switches loading to memory-mapped reads. */
+    public static final String MEMORY_MAPPED_PROPERTY = "bookstore.mmap";
+    /** System property with the number of threads used to load customers. */
+    public static final String LOAD_THREADS_PROPERTY = "bookstore.load.threads";
+    /** System property that makes saves rely on the journal instead of rewriting the data files. */
+    public static final String JOURNAL_PROPERTY = "bookstore.journal";
+    /** System property that turns the journal off entirely when false; changes then live in memory until saved. */
+    public static final String WAL_PROPERTY = "bookstore.wal";
+    /** System property that turns group commit of journal writes off when false. */
+    public static final String GROUP_COMMIT_PROPERTY = "bookstore.wal.groupCommit";
+    /** System property that makes saves write the binary snapshot instead of the text files. */
+    public static final String SNAPSHOT_PROPERTY = "bookstore.snapshot";
+    /** System property that keeps purchases in a store instead of Purchase objects: "columnar" or "offheap". */
+    public static final String PURCHASE_STORE_PROPERTY = "bookstore.purchaseStore";
+    /** System property that leaves purchase histories in customers.txt until they are first read. */
+    public static final String LAZY_HISTORIES_PROPERTY = "bookstore.lazyHistories";
+    /** System property with the most lazily loaded purchase histories kept in memory. */
+    public static final String RESIDENT_HISTORIES_PROPERTY = "bookstore.residentHistories";
+    /** System property that reads customers through an on-disk index as they are looked up, instead of loading them all. */
+    public static final String CUSTOMER_INDEX_PROPERTY = "bookstore.customerIndex";
+    /** System property with the most customers kept in the customer cache. */
+    public static final String CUSTOMER_CACHE_ENTRIES_PROPERTY = "bookstore.customerCache.entries";
+    /** System property with the most purchases, over all cached customers, kept in the customer cache. */
+    public static final String CUSTOMER_CACHE_WEIGHT_PROPERTY = "bookstore.customerCache.weight";
+    /** System property with the journal size, in MB, at which it is folded into the data files. */
+    public static final String JOURNAL_COMPACTION_PROPERTY = "bookstore.journal.compactMB";
+    /** System property with the minutes a token session may go unused before it expires. */
+    public static final String SESSION_IDLE_MINUTES_PROPERTY = "bookstore.session.idleMinutes";
+    /** System property with the PBKDF2 iterations of new password hashes. */
+    public static final String PASSWORD_ITERATIONS_PROPERTY = "bookstore.password.iterations";
+    /** System property with the number of passwords hashed at once. */
+    public static final String PASSWORD_THREADS_PROPERTY = "bookstore.password.threads";
+    /** System property with the owner's username. */
+    public static final String ADMIN_USERNAME_PROPERTY = "bookstore.admin.username";
+    /**
+     * System property with the hash of the owner's password, as printed by
+     * PasswordHasher. There is no default: without it nobody can log in as
+     * the owner.
+     */
+    public static final String ADMIN_PASSWORD_PROPERTY = "bookstore.admin.password";
+    /** System property with the login attempts allowed per username per minute. */
+    public static final String LOGIN_ATTEMPTS_PROPERTY = "bookstore.login.attemptsPerMinute";
+    /** System property with the login attempts allowed per client per minute. */
+    public static final String CLIENT_LOGIN_ATTEMPTS_PROPERTY = "bookstore.login.clientAttemptsPerMinute";
+
+    private static final int DEFAULT_COMPACTION_MB = 64;
+    private static final int CUSTOMER_LOCK_STRIPES = 64;
+    private static final int DEFAULT_CUSTOMER_CACHE_ENTRIES = 10000;
+    private static final int DEFAULT_CUSTOMER_CACHE_WEIGHT = 1000000;
+    private static final int DEFAULT_SESSION_IDLE_MINUTES = 30;
+    // Logins that may wait for a hashing thread, per thread
+    private static final int PASSWORD_QUEUE_PER_THREAD = 64;
+    private static final long VERIFIED_CACHE_MILLIS = 60_000;
+    private static final int VERIFIED_CACHE_ENTRIES = 10000;
+    private static final String DEFAULT_ADMIN_USERNAME = "admin";
+    private static final int DEFAULT_LOGIN_ATTEMPTS = 10;
+    private static final int DEFAULT_CLIENT_LOGIN_ATTEMPTS = 60;
+    private static final int LOGIN_LIMITER_KEYS = 100000;
+
     private List<Book> books;
     private List<Customer> customers;
-    private User currentUser;
-    private String currentScreen;
+    private final ReadWriteLock listLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] customerLocks;
+
+    // Session of the desktop application
+    private final Session defaultSession;
+    // Sessions of front ends that identify users by token, created on first use
+    private volatile SessionManager sessionManager;
+    private final CredentialVerifier credentialVerifier;
+    private final String adminUsername;
+    private final String adminPassword;
+    private final LoginRateLimiter usernameLoginLimiter;
+    private final LoginRateLimiter clientLoginLimiter;
+
+    // Secondary indexes, kept in step with the lists by the add/remove methods
+    private final Map<String, Book> booksById;
+    private final Map<String, Book> booksByTitle;
+    private final Map<String, Customer> customersByUsername;
+    private final Map<String, Customer> customersById;
+    private final CustomerCache customerCache;
+    private final BookSearchIndex bookSearchIndex = new BookSearchIndex();
+
+    // With the customer index open, customers are read from the customer
+    // file as they are looked up, and the list and indexes above only hold
+    // the customers pinned in memory: those added, or changed since the file
+    // was written, whose state lives in the journal until the next compaction
+    // writes them out. The rest are held by the customer cache and whoever
+    // is using them, and are known here only weakly, so every lookup of a
+    // customer in use finds the same object while those no one holds are
+    // released. Customers removed since the file was opened must not be
+    // read back from it.
+    private volatile IndexedCustomers indexedCustomers;
+    private final Set<String> removedCustomerIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, ResidentCustomer> residentCustomers = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Customer> releasedCustomers = new ReferenceQueue<>();
+
+    // Every change is made durable in the journal before it is acknowledged,
+    // and the journal is folded into the data files in the background once
+    // it grows past the threshold. In append-only mode saves rely on it too.
+    // Every change holds the journal lock shared while it updates memory and
+    // writes its record, so holding it exclusively gives a consistent cut
+    // between generations.
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private FileIO fileIO;
+    private PurchaseStore purchaseStore;
+    private final StringPool stringPool = new StringPool();
+    private volatile Journal journal;
+    // Set once a journal write fails. Changes made in memory since may not be
+    // durable and were reported as failed, so from then on the store refuses
+    // changes and saves, and only a reload brings it back to the last
+    // durable state.
+    private volatile IOException journalFailure;
+    private boolean appendOnly;
+    private boolean snapshotMode;
+    private long journalGeneration;
+    private long compactionThreshold;
+    private ExecutorService compactor;
+    private Future<?> compaction;
 
     // Singleton instance
     private static DataStore instance;
@@ -26,8 +177,64 @@ public class DataStore {
     private DataStore() {
         this.books = new ArrayList<>();
         this.customers = new ArrayList<>();
-        this.currentUser = null;
-        this.currentScreen = "login";
+        this.booksById = new ConcurrentHashMap<>();
+        this.booksByTitle = new ConcurrentHashMap<>();
+        this.customersByUsername = new ConcurrentHashMap<>();
+        this.customersById = new ConcurrentHashMap<>();
+        this.customerCache = new CustomerCache(new CustomerCache.Source() {
+            @Override
+            public Customer loadByUsername(String username) {
+                Customer customer = customersByUsername.get(username);
+                return customer != null ? customer : readIndexedCustomer(username, null);
+            }
+
+            @Override
+            public Customer loadById(String id) {
+                Customer customer = customersById.get(id);
+                return customer != null ? customer : readIndexedCustomer(null, id);
+            }
+
+            @Override
+            public void writeBack(Customer customer) {
+                // Changes are journaled as they are committed, and changed
+                // customers stay pinned until written, so there is nothing left to store
+            }
+        }, Integer.getInteger(CUSTOMER_CACHE_ENTRIES_PROPERTY, DEFAULT_CUSTOMER_CACHE_ENTRIES),
+                Integer.getInteger(CUSTOMER_CACHE_WEIGHT_PROPERTY, DEFAULT_CUSTOMER_CACHE_WEIGHT));
+        this.customerLocks = new ReentrantLock[CUSTOMER_LOCK_STRIPES];
+        for (int i = 0; i < customerLocks.length; i++) {
+            customerLocks[i] = new ReentrantLock();
+        }
+        this.defaultSession = new Session();
+        int hashThreads = Integer.getInteger(PASSWORD_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        this.credentialVerifier = new CredentialVerifier(
+                Integer.getInteger(PASSWORD_ITERATIONS_PROPERTY, PasswordHasher.DEFAULT_ITERATIONS),
+                hashThreads, hashThreads * PASSWORD_QUEUE_PER_THREAD, VERIFIED_CACHE_MILLIS, VERIFIED_CACHE_ENTRIES);
+        this.adminUsername = System.getProperty(ADMIN_USERNAME_PROPERTY, DEFAULT_ADMIN_USERNAME);
+        this.adminPassword = ownerPassword(System.getProperty(ADMIN_PASSWORD_PROPERTY));
+        int loginAttempts = Integer.getInteger(LOGIN_ATTEMPTS_PROPERTY, DEFAULT_LOGIN_ATTEMPTS);
+        this.usernameLoginLimiter = new LoginRateLimiter(loginAttempts, loginAttempts, LOGIN_LIMITER_KEYS);
+        int clientLoginAttempts = Integer.getInteger(CLIENT_LOGIN_ATTEMPTS_PROPERTY, DEFAULT_CLIENT_LOGIN_ATTEMPTS);
+        this.clientLoginLimiter = new LoginRateLimiter(clientLoginAttempts, clientLoginAttempts, LOGIN_LIMITER_KEYS);
+    }
+
+    /**
+     * Checks the configured hash of the owner's password.
+     *
+     * @return The hash, or null if there is none and owner login is disabled
+     */
+    private static String ownerPassword(String configured) {
+        if (configured == null || configured.isEmpty()) {
+            System.err.println("Owner login is disabled: set " + ADMIN_PASSWORD_PROPERTY
+                    + " to a hash printed by java com.bookstore.util.PasswordHasher password");
+            return null;
+        }
+        if (!PasswordHasher.isHashed(configured)) {
+            System.err.println("Owner login is disabled: " + ADMIN_PASSWORD_PROPERTY
+                    + " must be a hash printed by java com.bookstore.util.PasswordHasher, not the password");
+            return null;
+        }
+        return configured;
     }
 
     /**
@@ -41,73 +248,1301 @@ public class DataStore {
     }
 
     /**
-     * Loads data from files.
+     * Loads data from files, then replays any journal written since they
+     * were last saved. The binary snapshot is used instead of the text files
+     * when it is the more recently written of the two.
      */
     public void loadData() {
-        FileIO fileIO = new FileIO();
-        this.books = fileIO.loadBooks();
-        this.customers = fileIO.loadCustomers();
+        journalFailure = null;
+        fileIO = new FileIO();
+        fileIO.setMemoryMapped(Boolean.getBoolean(MEMORY_MAPPED_PROPERTY));
+        fileIO.setLoadParallelism(Integer.getInteger(LOAD_THREADS_PROPERTY,
+                Runtime.getRuntime().availableProcessors()));
+        snapshotMode = Boolean.getBoolean(SNAPSHOT_PROPERTY);
+        purchaseStore = createPurchaseStore(System.getProperty(PURCHASE_STORE_PROPERTY));
+        fileIO.setPurchaseStore(purchaseStore);
+        fileIO.setStringPool(stringPool);
+        fileIO.setLazyHistories(Boolean.getBoolean(LAZY_HISTORIES_PROPERTY));
+        Integer residentHistories = Integer.getInteger(RESIDENT_HISTORIES_PROPERTY);
+        if (residentHistories != null) {
+            fileIO.setResidentHistories(residentHistories);
+        }
+
+        Path directory = fileIO.getDataDirectory();
+        long baseGeneration = loadBase(directory);
+        // books.txt is replaced first, so a crash between the two files can leave it ahead
+        long booksGeneration = Math.max(baseGeneration, fileIO.getBooksJournalGeneration());
+        try {
+            Journal.deleteUpTo(directory, baseGeneration);
+            journalGeneration = Journal.replay(directory, baseGeneration, booksGeneration, this);
+
+            if (!"false".equals(System.getProperty(WAL_PROPERTY))) {
+                appendOnly = Boolean.getBoolean(JOURNAL_PROPERTY);
+                compactionThreshold = (long) Integer.getInteger(JOURNAL_COMPACTION_PROPERTY,
+                        DEFAULT_COMPACTION_MB) << 20;
+                journal = new Journal(directory, journalGeneration + 1,
+                        !"false".equals(System.getProperty(GROUP_COMMIT_PROPERTY)));
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        }
+        hashPlainPasswords();
+    }
+
+    /**
+     * Hashes every password still stored in plain text, as files written
+     * before passwords were hashed hold them, and writes the data files at
+     * once so that no plain text is left in them or in the journal. With
+     * the customer index this reads the whole customer file.
+     */
+    private void hashPlainPasswords() {
+        List<Customer> plain = new ArrayList<>();
+        for (Customer customer : getCustomers()) {
+            if (customer.getPassword() != null && !PasswordHasher.isHashed(customer.getPassword())) {
+                plain.add(customer);
+            }
+        }
+        if (plain.isEmpty()) {
+            return;
+        }
+
+        // Not through the verifier's pool, whose queue is sized for logins
+        int iterations = credentialVerifier.getIterations();
+        List<String> hashes = plain.parallelStream()
+                .map(customer -> PasswordHasher.hash(customer.getPassword(), iterations))
+                .collect(Collectors.toList());
+        try {
+            for (int i = 0; i < plain.size(); i++) {
+                replacePassword(plain.get(i), plain.get(i).getPassword(), hashes.get(i));
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("Error hashing stored passwords: " + e.getMessage());
+            return;
+        }
+        synchronized (compactionLock) {
+            awaitCompaction();
+            // The text files a snapshot took over from hold the plain text too
+            writeDataFiles(snapshotMode && Files.exists(fileIO.getCustomersFile()));
+        }
+        System.err.println("Hashed " + plain.size() + " passwords stored in plain text");
+    }
+
+    private static PurchaseStore createPurchaseStore(String kind) {
+        if ("columnar".equals(kind)) {
+            return new ColumnarPurchaseStore();
+        }
+        if ("offheap".equals(kind)) {
+            return new OffHeapPurchaseStore();
+        }
+        return null;
+    }
+
+    /**
+     * Loads books and customers from the snapshot or the text files.
+     *
+     * @return The last journal generation folded into what was loaded
+     */
+    private long loadBase(Path directory) {
+        Path snapshot = directory.resolve(SnapshotFile.FILE_NAME);
+        try {
+            if (Files.exists(snapshot) && (!Files.exists(fileIO.getCustomersFile())
+                    || Files.getLastModifiedTime(snapshot).compareTo(
+                            Files.getLastModifiedTime(fileIO.getCustomersFile())) >= 0)) {
+                SnapshotFile base = SnapshotFile.read(snapshot, purchaseStore);
+                setBooks(base.getBooks());
+                setCustomers(base.getCustomers());
+                return base.getJournalGeneration();
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot: " + e.getMessage());
+        }
+
+        if (Boolean.getBoolean(CUSTOMER_INDEX_PROPERTY) && !snapshotMode
+                && Files.exists(fileIO.getCustomersFile())) {
+            try {
+                IndexedCustomers indexed = IndexedCustomers.open(fileIO);
+                setBooks(fileIO.loadBooks());
+                setCustomers(new ArrayList<>());
+                indexedCustomers = indexed;
+                return indexed.getJournalGeneration();
+            } catch (IOException e) {
+                System.err.println("Error opening customer index: " + e.getMessage());
+            }
+        }
+
+        setBooks(fileIO.loadBooks());
+        setCustomers(fileIO.loadCustomers());
+        return fileIO.getJournalGeneration();
+    }
+
+    /**
+     * Writes books and customers to the snapshot or the text files, recording
+     * the last journal generation they contain.
+     */
+    private void writeBase(Path directory, Capture capture) throws IOException {
+        if (snapshotMode) {
+            SnapshotFile.write(directory.resolve(SnapshotFile.FILE_NAME), capture.books, capture.customers,
+                    capture, capture.generation);
+        } else {
+            writeTextFiles(directory, capture);
+        }
+    }
+
+    private void writeTextFiles(Path directory, Capture capture) throws IOException {
+        FileIO writer = new FileIO(directory.toString());
+        writer.setJournalGeneration(capture.generation);
+        writer.writeBooks(capture.books);
+        if (capture.indexed != null) {
+            try {
+                writer.mergeCustomers(capture.indexed.getChannel(), capture.replaced, capture.customers, capture);
+                if (reopenIndexedCustomers(capture.indexed)) {
+                    unpinCustomers(capture);
+                }
+            } finally {
+                capture.indexed.release();
+            }
+        } else {
+            writer.writeCustomers(capture.customers, capture);
+        }
+    }
+
+    /**
+     * Switches lookups to the customer file just written, indexing it. The
+     * old file stays readable until then, and is closed once the lookups
+     * still reading it have finished.
+     *
+     * @return false if the store was reloaded meanwhile and the file is not used
+     */
+    private boolean reopenIndexedCustomers(IndexedCustomers previous) throws IOException {
+        IndexedCustomers next = IndexedCustomers.open(fileIO);
+        boolean switched = false;
+        listLock.writeLock().lock();
+        try {
+            if (indexedCustomers == previous) {
+                indexedCustomers = next;
+                switched = true;
+            }
+        } finally {
+            listLock.writeLock().unlock();
+        }
+        (switched ? previous : next).close();
+        return switched;
+    }
+
+    /**
+     * Releases the pinned customers that the customer file now holds as
+     * they are, those unchanged since the capture it was written from. They
+     * stay known weakly, so anyone still using one keeps the same object. A
+     * customer whose lock is busy is left pinned until the next compaction,
+     * since it may be in the middle of a change.
+     */
+    private void unpinCustomers(Capture capture) {
+        Set<Customer> released = Collections.newSetFromMap(new IdentityHashMap<>());
+        listLock.writeLock().lock();
+        try {
+            for (int i = 0; i < capture.customers.size(); i++) {
+                Customer customer = capture.customers.get(i);
+                ReentrantLock lock = lockFor(customer);
+                if (!lock.tryLock()) {
+                    continue;
+                }
+                try {
+                    if (customersById.get(customer.getId()) == customer
+                            && customer.getPurchaseHistory().size() == capture.purchaseCounts[i]
+                            && customer.getPoints() == capture.points[i]
+                            && Objects.equals(customer.getPassword(), capture.passwords[i])) {
+                        // Known weakly before it is unindexed, so lookups find it throughout
+                        residentCustomers.put(customer.getId(), new ResidentCustomer(customer, releasedCustomers));
+                        unindexCustomer(customer);
+                        released.add(customer);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            customers.removeIf(released::contains);
+        } finally {
+            listLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Point-in-time copy of the store, taken with the journal lock held
+     * exclusively. Purchases appended after the capture are left out when
+     * the customers are written, since they belong to the next generation,
+     * and points are saved as they stood at the capture. With the customer
+     * index, customers not in memory are copied from the indexed file.
+     */
+    private final class Capture implements CustomerRecords {
+        final List<Book> books;
+        final List<Customer> customers;
+        final int[] purchaseCounts;
+        final int[] points;
+        final String[] passwords;
+        final long generation;
+        final IndexedCustomers indexed;
+        // Ids of the indexed file's records that are written from memory or removed
+        final Set<String> replaced;
+
+        Capture(long generation) {
+            listLock.readLock().lock();
+            try {
+                this.books = new ArrayList<>(DataStore.this.books);
+                this.customers = new ArrayList<>(DataStore.this.customers);
+                // Held until writeBase has merged from it
+                this.indexed = acquireIndexedCustomers();
+                this.replaced = indexed != null ? new HashSet<>(removedCustomerIds) : null;
+                if (replaced != null) {
+                    for (Customer customer : customers) {
+                        replaced.add(customer.getId());
+                    }
+                }
+            } finally {
+                listLock.readLock().unlock();
+            }
+            this.purchaseCounts = new int[customers.size()];
+            this.points = new int[customers.size()];
+            this.passwords = new String[customers.size()];
+            for (int i = 0; i < purchaseCounts.length; i++) {
+                purchaseCounts[i] = customers.get(i).getPurchaseHistory().size();
+                points[i] = customers.get(i).getPoints();
+                passwords[i] = customers.get(i).getPassword();
+            }
+            this.generation = generation;
+        }
+
+        @Override
+        public List<Purchase> purchasesOf(int index) {
+            return copyPurchases(customers.get(index), purchaseCounts[index]);
+        }
+
+        @Override
+        public int pointsOf(int index) {
+            return points[index];
+        }
     }
 
     /**
-     * Saves data to files.
+     * Saves data to files, folding in and deleting the journal. In
+     * append-only mode every change is already durable in the journal, so
+     * this only waits for a running compaction to finish.
      */
     public void saveData() {
-        FileIO fileIO = new FileIO();
-        fileIO.saveBooks(this.books);
-        fileIO.saveCustomers(this.customers);
+        synchronized (compactionLock) {
+            awaitCompaction();
+            if (journal != null && appendOnly) {
+                return;
+            }
+            writeDataFiles(false);
+        }
+    }
+
+    /**
+     * Writes the data files and deletes the journal they fold in. The
+     * caller holds the compaction lock and has waited for any compaction.
+     *
+     * @param textFiles true to write the text files too in snapshot mode,
+     *        before the snapshot so that it stays the newer
+     */
+    private void writeDataFiles(boolean textFiles) {
+        if (fileIO == null) {
+            fileIO = new FileIO();
+        }
+        if (journalFailure != null) {
+            System.err.println("Not saving data after a journal failure: " + journalFailure);
+            return;
+        }
+        try {
+            Capture capture = capture();
+            if (textFiles && snapshotMode) {
+                writeTextFiles(fileIO.getDataDirectory(), capture);
+            }
+            writeBase(fileIO.getDataDirectory(), capture);
+            Journal.deleteUpTo(fileIO.getDataDirectory(), capture.generation);
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Captures the current state and, if the journal is open, moves it on to
+     * a new generation so the capture holds exactly the closed generations.
+     */
+    private Capture capture() throws IOException {
+        journalLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journalGeneration = journal.rotate();
+            }
+            return new Capture(journalGeneration);
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records a purchase in the customer's history.
+     */
+    public void addPurchase(Customer customer, Purchase purchase) {
+        ReentrantLock lock = lockFor(customer);
+        commit(() -> {
+            lock.lock();
+            try {
+                pinCustomer(customer);
+                customer.addPurchase(purchase);
+                return append(journal -> journal.addPurchase(customer, purchase));
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Places a batch of orders in one commit, so they share the journal lock
+     * and a single fsync. Each order takes all of its books out of stock,
+     * spends its points and adds its purchases under its customer's lock,
+     * so no one sees part of an order, or else changes nothing. Each
+     * order's status tells which.
+     *
+     * @throws UncheckedIOException if the journal could not be written, in
+     *         which case every order is left PENDING, as none was placed
+     */
+    public void placeOrders(List<Order> orders) {
+        try {
+            commit(() -> {
+                long sequence = 0;
+                for (Order order : orders) {
+                    sequence = Math.max(sequence, placeOrder(order));
+                }
+                return sequence;
+            });
+        } catch (UncheckedIOException e) {
+            for (Order order : orders) {
+                order.setStatus(Order.Status.PENDING);
+            }
+            throw e;
+        }
+    }
+
+    private long placeOrder(Order order) {
+        List<Book> books = order.getBooks();
+        for (int i = 0; i < books.size(); i++) {
+            if (!books.get(i).tryReserve(1)) {
+                for (int j = 0; j < i; j++) {
+                    books.get(j).release(1);
+                }
+                order.setStatus(Order.Status.OUT_OF_STOCK);
+                return 0;
+            }
+        }
+        Customer customer = order.getCustomer();
+        ReentrantLock lock = lockFor(customer);
+        lock.lock();
+        try {
+            pinCustomer(customer);
+            int points = order.getPointsRedeemed();
+            if (points > 0 && !customer.redeemPoints(points)) {
+                for (Book book : books) {
+                    book.release(1);
+                }
+                order.setStatus(Order.Status.NOT_ENOUGH_POINTS);
+                return 0;
+            }
+            long sequence = 0;
+            for (Book book : books) {
+                sequence = append(journal -> journal.changeStock(book, -1));
+            }
+            if (points > 0) {
+                sequence = append(journal -> journal.redeemPoints(customer, points));
+            }
+            for (Purchase purchase : order.getPurchases()) {
+                customer.addPurchase(purchase);
+                sequence = append(journal -> journal.addPurchase(customer, purchase));
+            }
+            order.setStatus(Order.Status.PLACED);
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Spends points from the customer's balance.
+     *
+     * @return true if the customer had enough points
+     */
+    public boolean redeemPoints(Customer customer, int points) {
+        ReentrantLock lock = lockFor(customer);
+        return commit(() -> {
+            lock.lock();
+            try {
+                pinCustomer(customer);
+                if (!customer.redeemPoints(points)) {
+                    return -1;
+                }
+                return append(journal -> journal.redeemPoints(customer, points));
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Gets a copy of the customer's purchase history, safe to read while
+     * other sessions add purchases.
+     */
+    public List<Purchase> getPurchaseHistory(Customer customer) {
+        return copyPurchases(customer, Integer.MAX_VALUE);
+    }
+
+    private List<Purchase> copyPurchases(Customer customer, int count) {
+        ReentrantLock lock = lockFor(customer);
+        lock.lock();
+        try {
+            List<Purchase> history = customer.getPurchaseHistory();
+            if (history == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(history.subList(0, Math.min(count, history.size())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(Customer customer) {
+        int hash = customer.getId() != null ? customer.getId().hashCode() : 0;
+        return customerLocks[(hash ^ (hash >>> 16)) & (CUSTOMER_LOCK_STRIPES - 1)];
+    }
+
+    private interface JournalWrite {
+        long write(Journal journal);
+    }
+
+    private interface Change {
+        /**
+         * Applies the change in memory and appends its journal record.
+         *
+         * @return The journal sequence number to wait for, 0 if nothing was
+         *         written, or -1 if the change did not apply
+         */
+        long apply();
+    }
+
+    /**
+     * Appends a change to the journal, if it is open.
+     *
+     * @return The sequence number of the record, or 0 if there is no journal
+     */
+    private long append(JournalWrite write) {
+        return journal != null ? write.write(journal) : 0;
+    }
+
+    /**
+     * Applies a change under the shared journal lock and waits until its
+     * record is durable, then starts a compaction if the journal has grown
+     * past the threshold. Concurrent changes share each fsync.
+     *
+     * If the record cannot be made durable the change stays in memory but
+     * is fenced off: the caller gets an exception instead of an
+     * acknowledgement, and every later change and save is refused, so
+     * nothing that failed is ever reported or written as saved.
+     *
+     * @return false if the change did not apply
+     * @throws UncheckedIOException if the journal could not be written, now
+     *         or by an earlier change
+     */
+    private boolean commit(Change change) {
+        long sequence;
+        journalLock.readLock().lock();
+        try {
+            checkJournal();
+            sequence = change.apply();
+            if (sequence > 0) {
+                journal.sync(sequence);
+            }
+        } catch (IOException e) {
+            if (journalFailure == null) {
+                journalFailure = e;
+            }
+            throw new UncheckedIOException("Error writing journal", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        if (sequence > 0 && journal.size() >= compactionThreshold) {
+            startCompaction();
+        }
+        return sequence >= 0;
+    }
+
+    private void checkJournal() {
+        IOException failure = journalFailure;
+        if (failure != null) {
+            throw new UncheckedIOException("Journal failed earlier; changes are refused until the data is reloaded",
+                    failure);
+        }
+    }
+
+    /**
+     * Captures the current state, moves the journal on to a new generation
+     * and writes the captured state to the data files in the background.
+     * Journals up to the captured generation are deleted once the customer
+     * file or snapshot, which records that generation, has been replaced.
+     */
+    private void startCompaction() {
+        synchronized (compactionLock) {
+            if ((compaction != null && !compaction.isDone()) || journal.size() < compactionThreshold
+                    || journalFailure != null) {
+                return;
+            }
+            Capture capture;
+            try {
+                capture = capture();
+            } catch (IOException e) {
+                System.err.println("Error compacting journal: " + e.getMessage());
+                return;
+            }
+
+            if (compactor == null) {
+                compactor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "journal-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            Path directory = fileIO.getDataDirectory();
+            compaction = compactor.submit(() -> {
+                try {
+                    writeBase(directory, capture);
+                    Journal.deleteUpTo(directory, capture.generation);
+                } catch (IOException e) {
+                    System.err.println("Error compacting journal: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error compacting journal: " + e.getCause().getMessage());
+        }
     }
 
     /**
      * Authenticates a user.
+     *
+     * @throws LoginThrottledException if too many attempts were made for the username
      */
     public User authenticateUser(String username, String password) {
-        // Check for admin credentials
-        if (username.equals("admin") && password.equals("admin")) {
-            return new User(username, password, User.UserRole.OWNER);
+        return authenticateUser(username, password, null);
+    }
+
+    /**
+     * Authenticates a user. Unless the credentials were recently verified,
+     * the attempt first takes a token from the username's bucket and, if
+     * given, the client's, so a burst of guesses is refused before any
+     * password is hashed.
+     *
+     * @param client Where the attempt comes from, such as an address, or null if unknown
+     * @throws LoginThrottledException if too many attempts were made for the username or from the client
+     */
+    public User authenticateUser(String username, String password, String client) {
+        if (username == null || password == null) {
+            return null;
+        }
+
+        boolean admin = username.equals(adminUsername);
+        Customer customer = admin ? null : findCustomerByUsername(username);
+        String stored = admin ? adminPassword : customer != null ? customer.getPassword() : null;
+        // Unknown usernames are throttled too, so they cannot be told apart by it
+        if (stored == null || !credentialVerifier.isRemembered(username, password, stored)) {
+            throttleLogin(username, client);
         }
-        
-        // Check for customer credentials
-        for (Customer customer : customers) {
-            if (customer.getUsername().equals(username) && 
-                customer.getPassword().equals(password)) {
-                return new User(username, password, User.UserRole.CUSTOMER);
+        if (stored == null) {
+            // Hashed all the same, so an unknown username takes as long as a wrong password
+            credentialVerifier.verifyMissing(password);
+            return null;
+        }
+        if (!credentialVerifier.verify(username, password, stored)) {
+            return null;
+        }
+
+        if (admin) {
+            return new User(username, null, User.UserRole.OWNER);
+        }
+        if (credentialVerifier.needsRehash(stored)) {
+            rehashPassword(customer, stored, password);
+        }
+        return new User(username, null, User.UserRole.CUSTOMER);
+    }
+
+    private void throttleLogin(String username, String client) {
+        // The client's bucket goes first so that a spray of usernames from one client stops there
+        long wait = client != null ? clientLoginLimiter.admit(client) : 0;
+        if (wait == 0) {
+            wait = usernameLoginLimiter.admit(username);
+        }
+        if (wait > 0) {
+            throw new LoginThrottledException(Math.max(1, (wait + 999_999_999) / 1_000_000_000));
+        }
+    }
+
+    /**
+     * Replaces a password hashed with fewer iterations than configured,
+     * once its owner has proved they know it.
+     * Skipped if hashing is saturated or the journal cannot be written; the
+     * next login tries again.
+     */
+    private void rehashPassword(Customer customer, String stored, String password) {
+        String hash;
+        try {
+            hash = credentialVerifier.hash(password);
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        try {
+            replacePassword(customer, stored, hash);
+        } catch (UncheckedIOException e) {
+            // The login itself succeeded; the new hash is simply not kept
+            System.err.println("Error rehashing password: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces a customer's stored password with a hash of it, unless it
+     * was changed meanwhile.
+     *
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    private void replacePassword(Customer customer, String stored, String hash) {
+        ReentrantLock lock = lockFor(customer);
+        commit(() -> {
+            lock.lock();
+            try {
+                // Leave a password changed meanwhile alone
+                if (!stored.equals(customer.getPassword())) {
+                    return -1;
+                }
+                pinCustomer(customer);
+                customer.setPassword(hash);
+                return append(journal -> journal.changePassword(customer));
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Gets the verifier that checks and hashes passwords.
+     */
+    public CredentialVerifier getCredentialVerifier() {
+        return credentialVerifier;
+    }
+
+    /**
+     * Gets the limiter of login attempts per username.
+     */
+    public LoginRateLimiter getUsernameLoginLimiter() {
+        return usernameLoginLimiter;
+    }
+
+    /**
+     * Gets the limiter of login attempts per client.
+     */
+    public LoginRateLimiter getClientLoginLimiter() {
+        return clientLoginLimiter;
+    }
+
+    /**
+     * Finds a book by its id.
+     *
+     * @return The book, or null if there is none
+     */
+    public Book findBookById(String id) {
+        return id != null ? booksById.get(id) : null;
+    }
+
+    /**
+     * Finds a book by its title, ignoring case.
+     *
+     * @return The book, or null if there is none
+     */
+    public Book findBookByTitle(String title) {
+        return title != null ? booksByTitle.get(titleKey(title)) : null;
+    }
+
+    /**
+     * Searches book titles and authors. Each word of the query matches the
+     * start of a word, so partial input finds books as it is typed.
+     *
+     * @param limit The maximum number of books to return
+     * @return The best matches first, or an empty list for a blank query
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        return bookSearchIndex.search(query, limit);
+    }
+
+    /**
+     * Checks that a text field can be stored. The data files and the journal
+     * separate fields with commas and records with newlines, unescaped, so
+     * neither may appear in a title, author, username or name.
+     *
+     * @return false if the text holds a comma or a control character
+     */
+    public static boolean isValidField(String text) {
+        if (text == null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || Character.isISOControl(c)) {
+                return false;
             }
         }
-        
-        return null;
+        return true;
+    }
+
+    private static void checkField(String name, String text) {
+        if (!isValidField(text)) {
+            throw new IllegalArgumentException("The " + name + " must not contain commas or control characters");
+        }
+    }
+
+    /**
+     * Adds a book to the store and its indexes.
+     *
+     * @throws IllegalArgumentException if a field cannot be stored
+     */
+    public void addBook(Book book) {
+        checkField("title", book.getTitle());
+        checkField("author", book.getAuthor());
+        commit(() -> {
+            listLock.writeLock().lock();
+            try {
+                books.add(book);
+                indexBook(book);
+            } finally {
+                listLock.writeLock().unlock();
+            }
+            return append(journal -> journal.addBook(book));
+        });
+    }
+
+    /**
+     * Removes a book from the store and its indexes.
+     *
+     * @return true if the book was in the store
+     */
+    public boolean removeBook(Book book) {
+        return commit(() -> {
+            listLock.writeLock().lock();
+            try {
+                if (!books.remove(book)) {
+                    return -1;
+                }
+                unindexBook(book);
+            } finally {
+                listLock.writeLock().unlock();
+            }
+            return append(journal -> journal.deleteBook(book));
+        });
+    }
+
+    /**
+     * Reserves one copy of each book for checkout, all or nothing. The books
+     * are taken out of stock without locking, so concurrent buyers of the
+     * same book never oversell it.
+     *
+     * @return true if every book was reserved, false if any was out of stock
+     *         and nothing was reserved
+     */
+    public boolean reserveStock(List<Book> books) {
+        return commit(() -> {
+            for (int i = 0; i < books.size(); i++) {
+                if (!books.get(i).tryReserve(1)) {
+                    for (int j = 0; j < i; j++) {
+                        books.get(j).release(1);
+                    }
+                    return -1;
+                }
+            }
+            long sequence = 0;
+            for (Book book : books) {
+                sequence = append(journal -> journal.changeStock(book, -1));
+            }
+            return sequence;
+        });
+    }
+
+    /**
+     * Returns one copy of each book reserved by reserveStock to stock.
+     */
+    public void releaseStock(List<Book> books) {
+        commit(() -> {
+            long sequence = 0;
+            for (Book book : books) {
+                book.release(1);
+                sequence = append(journal -> journal.changeStock(book, 1));
+            }
+            return sequence;
+        });
+    }
+
+    /**
+     * Finds a customer by username, through the customer cache.
+     *
+     * @return The customer, or null if there is none
+     */
+    public Customer findCustomerByUsername(String username) {
+        return customerCache.getByUsername(username);
+    }
+
+    /**
+     * Finds a customer by id, through the customer cache.
+     *
+     * @return The customer, or null if there is none
+     */
+    public Customer findCustomerById(String id) {
+        return customerCache.getById(id);
+    }
+
+    /**
+     * Finds a customer by id without going through the customer cache, for
+     * journal replay, which touches each customer once and changes them in
+     * place, so a customer read from the indexed file is pinned.
+     */
+    Customer customerById(String id) {
+        if (id == null) {
+            return null;
+        }
+        Customer customer = customersById.get(id);
+        if (customer == null) {
+            customer = readIndexedCustomer(null, id);
+            if (customer != null) {
+                pinCustomer(customer);
+            }
+        }
+        return customer;
+    }
+
+    /**
+     * Weak reference to a customer read from the indexed customer file,
+     * cleared once neither the cache nor anyone else holds them.
+     */
+    private static final class ResidentCustomer extends WeakReference<Customer> {
+        final String id;
+
+        ResidentCustomer(Customer customer, ReferenceQueue<Customer> queue) {
+            super(customer, queue);
+            this.id = customer.getId();
+        }
+    }
+
+    /**
+     * Finds a customer who is not pinned in the indexed customer file, by
+     * username or else by id. A customer still in use is returned as the
+     * object already in use rather than read again.
+     *
+     * @return The customer, or null if the file has none or they were removed
+     */
+    private Customer readIndexedCustomer(String username, String id) {
+        Customer resident = id != null ? residentCustomer(id) : null;
+        if (resident != null) {
+            return resident;
+        }
+        IndexedCustomers indexed = acquireIndexedCustomers();
+        if (indexed == null) {
+            return null;
+        }
+        try {
+            Customer customer = username != null ? indexed.findByUsername(username) : indexed.findById(id);
+            return customer != null ? admitCustomer(customer) : null;
+        } catch (IOException e) {
+            System.err.println("Error reading customer: " + e.getMessage());
+            return null;
+        } finally {
+            releaseIndexedCustomers(indexed);
+        }
+    }
+
+    /**
+     * Gets the current indexed customer file with a hold on it, so that a
+     * compaction moving on to a newer file does not close it while it is
+     * read. The caller releases it with releaseIndexedCustomers.
+     *
+     * @return The file, or null without the customer index
+     */
+    private IndexedCustomers acquireIndexedCustomers() {
+        while (true) {
+            IndexedCustomers indexed = indexedCustomers;
+            // A closed file has already been replaced, so look again
+            if (indexed == null || indexed.acquire()) {
+                return indexed;
+            }
+        }
+    }
+
+    private static void releaseIndexedCustomers(IndexedCustomers indexed) {
+        if (indexed == null) {
+            return;
+        }
+        try {
+            indexed.release();
+        } catch (IOException e) {
+            System.err.println("Error closing customer index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Makes a customer read from the indexed customer file known to the
+     * store, weakly, unless the store already has a customer with the same
+     * id, pinned or in use, or they have been removed since. Their history
+     * is not moved into the purchase store, which only grows and would keep
+     * every customer ever read.
+     *
+     * @return The customer in the store, or null if they were removed
+     */
+    private Customer admitCustomer(Customer customer) {
+        expungeReleasedCustomers();
+        Customer[] admitted = new Customer[1];
+        residentCustomers.compute(customer.getId(), (id, resident) -> {
+            Customer existing = customersById.get(id);
+            if (existing == null && resident != null) {
+                existing = resident.get();
+            }
+            if (existing != null) {
+                admitted[0] = existing;
+                return resident;
+            }
+            if (removedCustomerIds.contains(id)) {
+                return null;
+            }
+            admitted[0] = customer;
+            return new ResidentCustomer(customer, releasedCustomers);
+        });
+        return admitted[0];
+    }
+
+    private Customer residentCustomer(String id) {
+        ResidentCustomer resident = residentCustomers.get(id);
+        return resident != null ? resident.get() : null;
+    }
+
+    private void expungeReleasedCustomers() {
+        for (Reference<? extends Customer> reference; (reference = releasedCustomers.poll()) != null; ) {
+            ResidentCustomer released = (ResidentCustomer) reference;
+            residentCustomers.remove(released.id, released);
+        }
+    }
+
+    /**
+     * Pins a customer read from the indexed customer file in the store
+     * before they are changed, so their changes, which only the journal
+     * holds, are not lost if the cache lets go of them. The caller holds
+     * the customer's lock. Without the index every customer is pinned.
+     */
+    private void pinCustomer(Customer customer) {
+        if (indexedCustomers == null || customersById.get(customer.getId()) == customer) {
+            return;
+        }
+        listLock.writeLock().lock();
+        try {
+            // A removed customer, or one replaced under the same id, stays out
+            if (customersById.get(customer.getId()) == null && !removedCustomerIds.contains(customer.getId())) {
+                customers.add(customer);
+                indexCustomer(customer);
+            }
+        } finally {
+            listLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a customer to the store and its indexes.
+     *
+     * @throws IllegalArgumentException if a field cannot be stored
+     */
+    public void addCustomer(Customer customer) {
+        checkField("username", customer.getUsername());
+        checkField("name", customer.getName());
+        if (customer.getPassword() != null && !PasswordHasher.isHashed(customer.getPassword())) {
+            customer.setPassword(credentialVerifier.hash(customer.getPassword()));
+        }
+        commit(() -> {
+            listLock.writeLock().lock();
+            try {
+                storeHistory(customer);
+                customers.add(customer);
+                indexCustomer(customer);
+            } finally {
+                listLock.writeLock().unlock();
+            }
+            return append(journal -> journal.addCustomer(customer));
+        });
+    }
+
+    /**
+     * Removes a customer from the store and its indexes.
+     *
+     * @return true if the customer was in the store
+     */
+    public boolean removeCustomer(Customer customer) {
+        return commit(() -> {
+            listLock.writeLock().lock();
+            try {
+                // With the index, a customer in use need not be pinned
+                if (!customers.remove(customer)
+                        && (indexedCustomers == null || residentCustomer(customer.getId()) != customer)) {
+                    return -1;
+                }
+                unindexCustomer(customer);
+                if (indexedCustomers != null) {
+                    removedCustomerIds.add(customer.getId());
+                    residentCustomers.remove(customer.getId());
+                }
+            } finally {
+                listLock.writeLock().unlock();
+            }
+            customerCache.invalidate(customer);
+            return append(journal -> journal.deleteCustomer(customer));
+        });
+    }
+
+    /**
+     * Moves a customer's purchases into the purchase store, if there is one
+     * and they are not there already. Lazy histories stay in the file.
+     */
+    private void storeHistory(Customer customer) {
+        if (purchaseStore == null || customer.getPurchaseHistory() instanceof StoredPurchaseHistory
+                || customer.getPurchaseHistory() instanceof LazyPurchaseHistory) {
+            return;
+        }
+        List<Purchase> history = purchaseStore.newHistory(customer.getId());
+        if (customer.getPurchaseHistory() != null) {
+            history.addAll(customer.getPurchaseHistory());
+        }
+        customer.setPurchaseHistory(history);
+    }
+
+    private void indexBook(Book book) {
+        indexBookKeys(book);
+        bookSearchIndex.add(book);
+    }
+
+    private void indexBookKeys(Book book) {
+        if (book.getId() != null) {
+            booksById.put(book.getId(), book);
+        }
+        if (book.getTitle() != null) {
+            booksByTitle.put(titleKey(book.getTitle()), book);
+        }
+    }
+
+    private void unindexBook(Book book) {
+        if (book.getId() != null) {
+            booksById.remove(book.getId(), book);
+        }
+        if (book.getTitle() != null) {
+            booksByTitle.remove(titleKey(book.getTitle()), book);
+        }
+        bookSearchIndex.remove(book);
+    }
+
+    private void indexCustomer(Customer customer) {
+        if (customer.getId() != null) {
+            customersById.put(customer.getId(), customer);
+        }
+        if (customer.getUsername() != null) {
+            customersByUsername.put(customer.getUsername(), customer);
+        }
+    }
+
+    private void unindexCustomer(Customer customer) {
+        if (customer.getId() != null) {
+            customersById.remove(customer.getId(), customer);
+        }
+        if (customer.getUsername() != null) {
+            customersByUsername.remove(customer.getUsername(), customer);
+        }
+    }
+
+    private static String titleKey(String title) {
+        return title == null ? null : title.toLowerCase(Locale.ROOT);
     }
 
     // Getters and setters
+
+    /**
+     * Gets a copy of the books. Use addBook/removeBook to modify.
+     */
     public List<Book> getBooks() {
-        return books;
+        listLock.readLock().lock();
+        try {
+            return new ArrayList<>(books);
+        } finally {
+            listLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of books, for reading them one at a time with
+     * getBookAt instead of copying the list.
+     */
+    public int getBookCount() {
+        listLock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            listLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the book at a position in the book list. Positions shift when a
+     * book is removed.
+     *
+     * @return The book, or null if the position is past the end of the list
+     */
+    public Book getBookAt(int index) {
+        listLock.readLock().lock();
+        try {
+            return index >= 0 && index < books.size() ? books.get(index) : null;
+        } finally {
+            listLock.readLock().unlock();
+        }
     }
 
     public void setBooks(List<Book> books) {
-        this.books = books;
+        listLock.writeLock().lock();
+        try {
+            this.books = new ArrayList<>(books);
+            booksById.clear();
+            booksByTitle.clear();
+            for (Book book : this.books) {
+                indexBookKeys(book);
+            }
+            bookSearchIndex.rebuild(this.books);
+        } finally {
+            listLock.writeLock().unlock();
+        }
     }
 
+    /**
+     * Gets a copy of the customers. Use addCustomer/removeCustomer to modify.
+     * With the customer index, every call reads the whole customer file, and
+     * the customers read are kept no longer than the caller keeps them. The
+     * file and the pinned customers are read under one hold of the list
+     * lock, which a compaction needs to switch files and unpin, so no
+     * customer falls between the two.
+     */
     public List<Customer> getCustomers() {
-        return customers;
+        listLock.readLock().lock();
+        try {
+            IndexedCustomers indexed = indexedCustomers;
+            if (indexed == null) {
+                return new ArrayList<>(customers);
+            }
+
+            List<Customer> all = new ArrayList<>();
+            try {
+                for (Customer customer : indexed.readAll()) {
+                    Customer admitted = admitCustomer(customer);
+                    if (admitted != null) {
+                        all.add(admitted);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading customers: " + e.getMessage());
+            }
+            // Then the pinned customers the file does not have yet
+            Set<Customer> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+            listed.addAll(all);
+            for (Customer customer : customers) {
+                if (!listed.contains(customer)) {
+                    all.add(customer);
+                }
+            }
+            return all;
+        } finally {
+            listLock.readLock().unlock();
+        }
     }
 
     public void setCustomers(List<Customer> customers) {
-        this.customers = customers;
+        IndexedCustomers previous;
+        listLock.writeLock().lock();
+        try {
+            this.customers = new ArrayList<>(customers);
+            customersByUsername.clear();
+            customersById.clear();
+            customerCache.clear();
+            previous = indexedCustomers;
+            indexedCustomers = null;
+            removedCustomerIds.clear();
+            residentCustomers.clear();
+            for (Customer customer : this.customers) {
+                storeHistory(customer);
+                indexCustomer(customer);
+            }
+        } finally {
+            listLock.writeLock().unlock();
+        }
+        releaseIndexedCustomers(previous);
     }
 
-    public User getCurrentUser() {
-        return currentUser;
+    /**
+     * Gets the store holding every customer's purchases, or null if they
+     * are kept as Purchase objects.
+     */
+    public PurchaseStore getPurchaseStore() {
+        return purchaseStore;
     }
 
-    public void setCurrentUser(User currentUser) {
-        this.currentUser = currentUser;
+    /**
+     * Gets the cache that customer lookups by username and id go through.
+     */
+    public CustomerCache getCustomerCache() {
+        return customerCache;
     }
 
-    public String getCurrentScreen() {
-        return currentScreen;
+    /**
+     * Gets the pool that book ids, titles, authors and purchase dates are
+     * interned in as they are loaded or purchased.
+     */
+    public StringPool getStringPool() {
+        return stringPool;
     }
 
-    public void setCurrentScreen(String currentScreen) {
-        this.currentScreen = currentScreen;
+    /**
+     * Gets the session used by the desktop application. Other front ends
+     * create a Session per user.
+     */
+    public Session getDefaultSession() {
+        return defaultSession;
+    }
+
+    /**
+     * Gets the sessions of front ends that identify users by token, such as
+     * the HTTP API, creating it on first use.
+     */
+    public SessionManager getSessionManager() {
+        SessionManager manager = sessionManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = sessionManager;
+                if (manager == null) {
+                    manager = new SessionManager(Integer.getInteger(SESSION_IDLE_MINUTES_PROPERTY,
+                            DEFAULT_SESSION_IDLE_MINUTES), TimeUnit.MINUTES);
+                    sessionManager = manager;
+                }
+            }
+        }
+        return manager;
     }
 }
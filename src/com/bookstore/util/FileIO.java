@@ -3,37 +3,226 @@ package com.bookstore.util;
 
 import com.bookstore.model.Book;
 import com.bookstore.model.Customer;
+import com.bookstore.model.Money;
 import com.bookstore.model.Purchase;
+import com.bookstore.model.PurchaseStore;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Handles file input/output operations for the bookstore application.
  */
 public class FileIO {
-    private static final String BOOKS_FILE = "data/books.txt";
-    private static final String CUSTOMERS_FILE = "data/customers.txt";
+    private static final String DATA_DIRECTORY = "data";
+    private static final String BOOKS_FILE = "books.txt";
+    private static final String CUSTOMERS_FILE = "customers.txt";
+    private static final long PARALLEL_LOAD_THRESHOLD = 16L << 20;
+    private static final int DEFAULT_RESIDENT_HISTORIES = 10000;
+
+    private static final byte[] JOURNAL_PREFIX = "JOURNAL:".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] CUSTOMER_PREFIX = "CUSTOMER:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PASSWORD_PREFIX = "PASSWORD:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POINTS_PREFIX = "POINTS:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PURCHASE_PREFIX = "PURCHASE:".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path dataDirectory;
+    private final Path booksFile;
+    private final Path customersFile;
+    private volatile long journalGeneration;
+    private long booksJournalGeneration;
+    private boolean memoryMapped;
+    private int loadParallelism = 1;
+    private PurchaseStore purchaseStore;
+    private StringPool stringPool;
+    private boolean lazyHistories;
+    private int residentHistories = DEFAULT_RESIDENT_HISTORIES;
+    private HistoryPager historyPager;
+
+    /**
+     * Constructor using the default data directory.
+     */
+    public FileIO() {
+        this(DATA_DIRECTORY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataDirectory The directory holding books.txt and customers.txt
+     */
+    public FileIO(String dataDirectory) {
+        this.dataDirectory = Paths.get(dataDirectory);
+        this.booksFile = this.dataDirectory.resolve(BOOKS_FILE);
+        this.customersFile = this.dataDirectory.resolve(CUSTOMERS_FILE);
+    }
+
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public Path getCustomersFile() {
+        return customersFile;
+    }
+
+    /**
+     * Gets the B+-tree index of the customer file, as used by IndexedCustomers.
+     */
+    public Path getCustomerIndexFile() {
+        return dataDirectory.resolve(CustomerIndex.FILE_NAME);
+    }
+
+    /**
+     * Gets the last journal generation contained in the customer file, as
+     * read by loadCustomers or to be written by saveCustomers. Zero if none.
+     */
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Sets the last journal generation contained in the data files, which
+     * writeBooks and the customer writers record in them.
+     */
+    public void setJournalGeneration(long journalGeneration) {
+        this.journalGeneration = journalGeneration;
+    }
+
+    /**
+     * Gets the last journal generation contained in the book file, as read
+     * by loadBooks. Zero if none. The book file is replaced before the
+     * customer file, so after a crash between the two it may be ahead of
+     * getJournalGeneration, and the book changes of the generations in
+     * between must not be replayed onto it again.
+     */
+    public long getBooksJournalGeneration() {
+        return booksJournalGeneration;
+    }
+
+    /**
+     * Checks whether loads read the data files through memory mappings.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Sets whether loads map the data files in chunks instead of copying them
+     * through a read buffer. Worthwhile for multi-gigabyte files.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public PurchaseStore getPurchaseStore() {
+        return purchaseStore;
+    }
+
+    /**
+     * Sets the store that loaded purchase histories keep their purchases
+     * in, or null to keep them as Purchase objects.
+     */
+    public void setPurchaseStore(PurchaseStore purchaseStore) {
+        this.purchaseStore = purchaseStore;
+    }
+
+    public StringPool getStringPool() {
+        return stringPool;
+    }
 
     /**
-     * Loads books from file.
+     * Sets the pool that repeated values read by loads, such as book ids,
+     * titles, authors and purchase dates, are interned in, or null to
+     * decode every value separately.
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public boolean isLazyHistories() {
+        return lazyHistories;
+    }
+
+    /**
+     * Sets whether loadCustomers leaves purchases in the file and gives
+     * each customer a LazyPurchaseHistory that reads them on first use.
+     * The file stays open for as long as those histories are in use.
+     */
+    public void setLazyHistories(boolean lazyHistories) {
+        this.lazyHistories = lazyHistories;
+    }
+
+    /**
+     * Sets the most lazy histories kept parsed in memory at once; the
+     * least recently used are dropped beyond that. 10000 by default.
+     */
+    public void setResidentHistories(int residentHistories) {
+        this.residentHistories = Math.max(1, residentHistories);
+    }
+
+    /**
+     * Describes how lazy histories have been served since the last load,
+     * or returns null if it was not lazy.
+     */
+    public String getHistoryStats() {
+        HistoryPager pager = historyPager;
+        if (pager == null) {
+            return null;
+        }
+        return "resident=" + pager.getResidentCount() + ", hits=" + pager.getHits()
+                + ", pageIns=" + pager.getPageIns();
+    }
+
+    /**
+     * Gets the number of threads used to parse the customer file.
+     */
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    /**
+     * Sets the number of threads used to parse the customer file. Files
+     * smaller than 16 MB are always parsed on the calling thread.
+     */
+    public void setLoadParallelism(int loadParallelism) {
+        this.loadParallelism = Math.max(1, loadParallelism);
+    }
+
+    /**
+     * Loads books from file. A leading JOURNAL line records the last journal
+     * generation folded into the file.
      */
     public List<Book> loadBooks() {
         List<Book> books = new ArrayList<>();
+        booksJournalGeneration = 0;
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(BOOKS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String id = parts[0];
-                    String title = parts[1];
-                    String author = parts[2];
-                    double price = Double.parseDouble(parts[3]);
-                    int quantity = Integer.parseInt(parts[4]);
-                    
-                    books.add(new Book(id, title, author, price, quantity));
+        try (RecordReader reader = new RecordReader(booksFile, memoryMapped)) {
+            while (reader.nextLine()) {
+                if (reader.startsWith(JOURNAL_PREFIX)) {
+                    try {
+                        booksJournalGeneration = reader.parseLong(reader.lineStart() + JOURNAL_PREFIX.length,
+                                reader.lineEnd());
+                    } catch (NumberFormatException e) {
+                        booksJournalGeneration = 0;
+                    }
+                    continue;
+                }
+                Book book = parseBook(reader, reader.lineStart(), reader.lineEnd(), stringPool);
+                if (book != null) {
+                    books.add(book);
                 }
             }
         } catch (IOException e) {
@@ -44,103 +233,576 @@ public class FileIO {
     }
 
     /**
-     * Saves books to file.
+     * Parses a book line of the form id,title,author,price,quantity.
+     *
+     * @param pool Pool for the id, title and author, or null
+     * @return The book, or null if the line is not a well-formed book
+     */
+    static Book parseBook(RecordReader reader, int start, int end, StringPool pool) {
+        int titleStart = reader.indexOf((byte) ',', start, end) + 1;
+        int authorStart = titleStart == 0 ? 0 : reader.indexOf((byte) ',', titleStart, end) + 1;
+        int priceStart = authorStart == 0 ? 0 : reader.indexOf((byte) ',', authorStart, end) + 1;
+        int quantityStart = priceStart == 0 ? 0 : reader.indexOf((byte) ',', priceStart, end) + 1;
+        if (quantityStart == 0 || reader.indexOf((byte) ',', quantityStart, end) >= 0) {
+            return null;
+        }
+
+        try {
+            return new Book(
+                    reader.string(start, titleStart - 1, pool),
+                    reader.string(titleStart, authorStart - 1, pool),
+                    reader.string(authorStart, priceStart - 1, pool),
+                    reader.parseCents(priceStart, quantityStart - 1),
+                    reader.parseInt(quantityStart, end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves books to file. The file is written beside the old one and
+     * moved into place, so a crash never leaves a half-written file.
      */
     public void saveBooks(List<Book> books) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(BOOKS_FILE))) {
-            for (Book book : books) {
-                writer.write(String.format("%s,%s,%s,%.2f,%d\n",
-                        book.getId(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getPrice(),
-                        book.getQuantity()));
-            }
+        try {
+            writeBooks(books);
         } catch (IOException e) {
             System.err.println("Error saving books: " + e.getMessage());
         }
     }
 
+    /**
+     * Saves books to file, reporting failure to the caller.
+     */
+    void writeBooks(List<Book> books) throws IOException {
+        Path tempFile = temporaryFile(booksFile);
+        try (FileChannel out = openTemporaryFile(tempFile)) {
+            Writer writer = newWriter(out);
+            if (journalGeneration > 0) {
+                writer.write("JOURNAL:" + journalGeneration + "\n");
+            }
+            for (Book book : books) {
+                writer.write(formatBook(book));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.force(true);
+        }
+        replace(tempFile, booksFile);
+    }
+
+    /**
+     * Formats a book as an id,title,author,price,quantity line without the newline.
+     */
+    static String formatBook(Book book) {
+        StringBuilder line = new StringBuilder(64)
+                .append(book.getId()).append(',')
+                .append(book.getTitle()).append(',')
+                .append(book.getAuthor()).append(',');
+        return Money.appendTo(line, book.getPriceCents()).append(',')
+                .append(book.getQuantity())
+                .toString();
+    }
+
     /**
      * Loads customers from file.
      */
     public List<Customer> loadCustomers() {
         List<Customer> customers = new ArrayList<>();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(CUSTOMERS_FILE))) {
-            String line;
-            Customer currentCustomer = null;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("CUSTOMER:")) {
-                    if (currentCustomer != null) {
-                        customers.add(currentCustomer);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(customersFile, StandardOpenOption.READ);
+            HistoryPager pager = lazyHistories ? new HistoryPager(channel, stringPool, residentHistories) : null;
+            if (loadParallelism > 1 && channel.size() >= PARALLEL_LOAD_THRESHOLD) {
+                loadCustomersParallel(channel, customers, pager);
+            } else {
+                readCustomers(new RecordReader(channel, memoryMapped, 0, channel.size()), customers, pager);
+            }
+            if (pager != null) {
+                // The histories read from the channel from now on
+                historyPager = pager;
+                channel = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading customers: " + e.getMessage());
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing customers file: " + e.getMessage());
+                }
+            }
+        }
+        
+        return customers;
+    }
+
+    /**
+     * Reads the customers in [start, end) of an open customer file, which
+     * must begin on a CUSTOMER line, as loadCustomers would.
+     *
+     * @param pager Pager for lazy histories over the same channel, or null
+     *        to parse the purchases
+     */
+    List<Customer> readCustomers(FileChannel channel, long start, long end, HistoryPager pager)
+            throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        // A single record is small, so only a whole-file read is worth mapping
+        boolean mapped = memoryMapped && end - start >= PARALLEL_LOAD_THRESHOLD;
+        readCustomers(new RecordReader(channel, mapped, start, end), customers, pager);
+        return customers;
+    }
+
+    /**
+     * Creates a pager for the lazy histories of customers read from an open
+     * customer file, or returns null if histories are not lazy.
+     */
+    HistoryPager newHistoryPager(FileChannel channel) {
+        return lazyHistories ? new HistoryPager(channel, stringPool, residentHistories) : null;
+    }
+
+    /**
+     * Reads the journal generation recorded on the first line of an open
+     * customer file, without reading any customers.
+     *
+     * @return The generation, or zero if the file records none
+     */
+    static long readJournalGeneration(FileChannel channel) throws IOException {
+        RecordReader reader = new RecordReader(channel, false, 0, Math.min(channel.size(), 64));
+        if (reader.nextLine() && reader.startsWith(JOURNAL_PREFIX)) {
+            try {
+                return reader.parseLong(reader.lineStart() + JOURNAL_PREFIX.length, reader.lineEnd());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Splits the customer file into loadParallelism byte ranges that each begin
+     * on a CUSTOMER line, parses them on a fork-join pool and appends the
+     * results in file order.
+     */
+    private void loadCustomersParallel(FileChannel channel, List<Customer> customers, HistoryPager pager)
+            throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[loadParallelism + 1];
+        for (int i = 1; i < loadParallelism; i++) {
+            bounds[i] = Math.max(bounds[i - 1], nextCustomerOffset(channel, size * i / loadParallelism));
+        }
+        bounds[loadParallelism] = size;
+
+        ForkJoinPool pool = new ForkJoinPool(loadParallelism);
+        try {
+            List<ForkJoinTask<List<Customer>>> parts = new ArrayList<>(loadParallelism);
+            for (int i = 0; i < loadParallelism; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                parts.add(pool.submit(() -> {
+                    List<Customer> part = new ArrayList<>();
+                    try {
+                        readCustomers(new RecordReader(channel, memoryMapped, start, end), part, pager);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                    
-                    String[] parts = line.substring(9).split(",");
-                    if (parts.length == 3) {
-                        String id = parts[0];
-                        String username = parts[1];
-                        String name = parts[2];
-                        
-                        currentCustomer = new Customer();
-                        currentCustomer.setId(id);
-                        currentCustomer.setUsername(username);
-                        currentCustomer.setName(name);
+                    return part;
+                }));
+            }
+
+            for (ForkJoinTask<List<Customer>> part : parts) {
+                customers.addAll(part.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Finds the offset of the first CUSTOMER line starting at or after the
+     * given position, or the file size if there is none.
+     */
+    private long nextCustomerOffset(FileChannel channel, long position) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+
+        // Starting one byte early means a line beginning exactly at position
+        // is not swallowed as the partial line
+        RecordReader reader = new RecordReader(channel, false, position - 1, channel.size());
+        if (!reader.nextLine()) {
+            return channel.size();
+        }
+        while (reader.nextLine()) {
+            if (reader.startsWith(CUSTOMER_PREFIX)) {
+                return reader.lineOffset();
+            }
+        }
+        return channel.size();
+    }
+
+    /**
+     * Reads customer records until the reader is exhausted. PASSWORD, POINTS
+     * and PURCHASE lines attach to the closest preceding CUSTOMER line; a
+     * leading JOURNAL line records the last journal generation folded into
+     * the file. The POINTS balance replaces the points credited by the
+     * purchases once the record ends, so files written before the ledger
+     * existed still load with points earned from their history.
+     *
+     * With a pager, PURCHASE lines are only checked and counted, and each
+     * customer gets a LazyPurchaseHistory over the range they span.
+     */
+    private void readCustomers(RecordReader reader, List<Customer> customers, HistoryPager pager)
+            throws IOException {
+        Customer currentCustomer = null;
+        int points = -1;
+        HistoryRange range = pager != null ? new HistoryRange() : null;
+
+        while (reader.nextLine()) {
+            int start = reader.lineStart();
+            int end = reader.lineEnd();
+
+            if (reader.startsWith(JOURNAL_PREFIX)) {
+                try {
+                    journalGeneration = reader.parseLong(start + JOURNAL_PREFIX.length, end);
+                } catch (NumberFormatException e) {
+                    journalGeneration = 0;
+                }
+            } else if (reader.startsWith(CUSTOMER_PREFIX)) {
+                if (currentCustomer != null) {
+                    customers.add(endCustomer(currentCustomer, points, pager, range));
+                }
+                currentCustomer = parseCustomer(reader, start + CUSTOMER_PREFIX.length, end);
+                if (currentCustomer != null && purchaseStore != null && pager == null) {
+                    currentCustomer.setPurchaseHistory(purchaseStore.newHistory(currentCustomer.getId()));
+                }
+                points = -1;
+                if (range != null) {
+                    range.reset();
+                }
+            } else if (reader.startsWith(PASSWORD_PREFIX) && currentCustomer != null) {
+                currentCustomer.setPassword(reader.string(start + PASSWORD_PREFIX.length, end));
+            } else if (reader.startsWith(POINTS_PREFIX) && currentCustomer != null) {
+                try {
+                    points = reader.parseInt(start + POINTS_PREFIX.length, end);
+                } catch (NumberFormatException e) {
+                    points = -1;
+                }
+            } else if (reader.startsWith(PURCHASE_PREFIX) && currentCustomer != null) {
+                if (range != null) {
+                    long cents = scanPurchase(reader, start + PURCHASE_PREFIX.length, end);
+                    if (cents != Long.MIN_VALUE) {
+                        range.add(reader.lineOffset(), reader.lineOffset() + (end - start), cents);
                     }
-                } else if (line.startsWith("PASSWORD:") && currentCustomer != null) {
-                    currentCustomer.setPassword(line.substring(9));
-                } else if (line.startsWith("PURCHASE:") && currentCustomer != null) {
-                    String[] parts = line.substring(9).split(",");
-                    if (parts.length == 6) {
-                        String id = parts[0];
-                        String bookId = parts[1];
-                        String bookTitle = parts[2];
-                        int quantity = Integer.parseInt(parts[3]);
-                        double totalPrice = Double.parseDouble(parts[4]);
-                        String date = parts[5];
-                        
-                        Purchase purchase = new Purchase(id, bookId, bookTitle, quantity, totalPrice, date);
+                } else {
+                    Purchase purchase = parsePurchase(reader, start + PURCHASE_PREFIX.length, end, stringPool);
+                    if (purchase != null) {
                         currentCustomer.addPurchase(purchase);
                     }
                 }
             }
-            
-            if (currentCustomer != null) {
-                customers.add(currentCustomer);
+        }
+
+        if (currentCustomer != null) {
+            customers.add(endCustomer(currentCustomer, points, pager, range));
+        }
+    }
+
+    private static Customer endCustomer(Customer customer, int points, HistoryPager pager, HistoryRange range) {
+        if (pager != null) {
+            customer.setPurchaseHistory(new LazyPurchaseHistory(pager, range.start, range.end, range.count));
+            customer.setPoints(range.points);
+        }
+        if (points >= 0) {
+            customer.setPoints(points);
+        }
+        return customer;
+    }
+
+    /**
+     * The PURCHASE lines of the customer being read in lazy mode.
+     */
+    private static final class HistoryRange {
+        long start;
+        long end;
+        int count;
+        int points;
+
+        void add(long lineStart, long lineEnd, long cents) {
+            if (count++ == 0) {
+                start = lineStart;
             }
-        } catch (IOException e) {
-            System.err.println("Error loading customers: " + e.getMessage());
+            end = lineEnd;
+            points += (int) (cents / 10);
+        }
+
+        void reset() {
+            start = 0;
+            end = 0;
+            count = 0;
+            points = 0;
         }
-        
-        return customers;
     }
 
     /**
-     * Saves customers to file.
+     * Reads the PURCHASE lines in [start, end) of a customer file.
      */
-    public void saveCustomers(List<Customer> customers) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(CUSTOMERS_FILE))) {
-            for (Customer customer : customers) {
-                writer.write(String.format("CUSTOMER:%s,%s,%s\n",
-                        customer.getId(),
-                        customer.getUsername(),
-                        customer.getName()));
-                
-                writer.write(String.format("PASSWORD:%s\n", customer.getPassword()));
-                
-                for (Purchase purchase : customer.getPurchaseHistory()) {
-                    writer.write(String.format("PURCHASE:%s,%s,%s,%d,%.2f,%s\n",
-                            purchase.getId(),
-                            purchase.getBookId(),
-                            purchase.getBookTitle(),
-                            purchase.getQuantity(),
-                            purchase.getTotalPrice(),
-                            purchase.getDate()));
+    static List<Purchase> readPurchases(FileChannel channel, long start, long end, StringPool pool)
+            throws IOException {
+        List<Purchase> purchases = new ArrayList<>();
+        RecordReader reader = new RecordReader(channel, false, start, end);
+        while (reader.nextLine()) {
+            if (reader.startsWith(PURCHASE_PREFIX)) {
+                Purchase purchase = parsePurchase(reader, reader.lineStart() + PURCHASE_PREFIX.length,
+                        reader.lineEnd(), pool);
+                if (purchase != null) {
+                    purchases.add(purchase);
                 }
             }
+        }
+        return purchases;
+    }
+
+    /**
+     * Parses the id,username,name fields of a CUSTOMER line.
+     */
+    static Customer parseCustomer(RecordReader reader, int start, int end) {
+        int usernameStart = reader.indexOf((byte) ',', start, end) + 1;
+        int nameStart = usernameStart == 0 ? 0 : reader.indexOf((byte) ',', usernameStart, end) + 1;
+        if (nameStart == 0 || nameStart == end || reader.indexOf((byte) ',', nameStart, end) >= 0) {
+            return null;
+        }
+
+        return new Customer(
+                reader.string(start, usernameStart - 1),
+                reader.string(usernameStart, nameStart - 1),
+                null,
+                reader.string(nameStart, end),
+                null);
+    }
+
+    /**
+     * Parses the id,bookId,bookTitle,quantity,totalPrice,date fields of a PURCHASE line.
+     * Purchase ids are unique, so only the other strings go through the pool.
+     */
+    static Purchase parsePurchase(RecordReader reader, int start, int end, StringPool pool) {
+        int bookIdStart = reader.indexOf((byte) ',', start, end) + 1;
+        int titleStart = bookIdStart == 0 ? 0 : reader.indexOf((byte) ',', bookIdStart, end) + 1;
+        int quantityStart = titleStart == 0 ? 0 : reader.indexOf((byte) ',', titleStart, end) + 1;
+        int priceStart = quantityStart == 0 ? 0 : reader.indexOf((byte) ',', quantityStart, end) + 1;
+        int dateStart = priceStart == 0 ? 0 : reader.indexOf((byte) ',', priceStart, end) + 1;
+        if (dateStart == 0 || dateStart == end || reader.indexOf((byte) ',', dateStart, end) >= 0) {
+            return null;
+        }
+
+        try {
+            return new Purchase(
+                    reader.string(start, bookIdStart - 1),
+                    reader.string(bookIdStart, titleStart - 1, pool),
+                    reader.string(titleStart, quantityStart - 1, pool),
+                    reader.parseInt(quantityStart, priceStart - 1),
+                    reader.parseCents(priceStart, dateStart - 1),
+                    reader.string(dateStart, end, pool));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the fields of a PURCHASE line as parsePurchase does, without
+     * creating any objects.
+     *
+     * @return The total price in cents, or Long.MIN_VALUE if parsePurchase
+     *         would reject the line
+     */
+    static long scanPurchase(RecordReader reader, int start, int end) {
+        int bookIdStart = reader.indexOf((byte) ',', start, end) + 1;
+        int titleStart = bookIdStart == 0 ? 0 : reader.indexOf((byte) ',', bookIdStart, end) + 1;
+        int quantityStart = titleStart == 0 ? 0 : reader.indexOf((byte) ',', titleStart, end) + 1;
+        int priceStart = quantityStart == 0 ? 0 : reader.indexOf((byte) ',', quantityStart, end) + 1;
+        int dateStart = priceStart == 0 ? 0 : reader.indexOf((byte) ',', priceStart, end) + 1;
+        if (dateStart == 0 || dateStart == end || reader.indexOf((byte) ',', dateStart, end) >= 0) {
+            return Long.MIN_VALUE;
+        }
+
+        try {
+            reader.parseInt(quantityStart, priceStart - 1);
+            return reader.parseCents(priceStart, dateStart - 1);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Saves customers to file, replacing it atomically like saveBooks.
+     */
+    public void saveCustomers(List<Customer> customers) {
+        try {
+            writeCustomers(customers, null);
         } catch (IOException e) {
             System.err.println("Error saving customers: " + e.getMessage());
         }
     }
+
+    /**
+     * Saves customers to file, reporting failure to the caller. When given,
+     * records supplies the purchases and points to write for each customer,
+     * which lets a caller save a point-in-time view while customers are still
+     * changing; otherwise each customer's current state is written.
+     */
+    void writeCustomers(List<Customer> customers, CustomerRecords records) throws IOException {
+        Path tempFile = temporaryFile(customersFile);
+        try (FileChannel out = openTemporaryFile(tempFile)) {
+            Writer writer = newWriter(out);
+            if (journalGeneration > 0) {
+                writer.write("JOURNAL:" + journalGeneration + "\n");
+            }
+
+            writeCustomerRecords(writer, customers, records);
+            writer.flush();
+            out.force(true);
+        }
+        replace(tempFile, customersFile);
+    }
+
+    private static void writeCustomerRecords(Writer writer, List<Customer> customers, CustomerRecords records)
+            throws IOException {
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            writer.write(String.format("CUSTOMER:%s,%s,%s\n",
+                    customer.getId(),
+                    customer.getUsername(),
+                    customer.getName()));
+
+            writer.write(String.format("PASSWORD:%s\n", customer.getPassword()));
+            writer.write("POINTS:" + (records != null ? records.pointsOf(i) : customer.getPoints()) + "\n");
+
+            List<Purchase> purchases = records != null ? records.purchasesOf(i) : customer.getPurchaseHistory();
+            for (Purchase purchase : purchases) {
+                writer.write("PURCHASE:");
+                writer.write(formatPurchase(purchase));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Saves customers when only some of them are in memory. The records of
+     * an existing customer file are copied across unparsed, except those
+     * whose ids are in replaced, and the given customers are written after
+     * them as writeCustomers would. The file is replaced atomically.
+     *
+     * @param base The customer file being replaced, open for reading
+     * @param replaced Ids of the records to leave out: the customers being
+     *        written and any that have been removed
+     */
+    void mergeCustomers(FileChannel base, Set<String> replaced, List<Customer> customers, CustomerRecords records)
+            throws IOException {
+        Path tempFile = temporaryFile(customersFile);
+        try (FileChannel out = openTemporaryFile(tempFile)) {
+            Writer writer = newWriter(out);
+            if (journalGeneration > 0) {
+                writer.write("JOURNAL:" + journalGeneration + "\n");
+            }
+
+            // Runs of kept records are copied straight between the channels
+            long size = base.size();
+            long runStart = -1;
+            RecordReader reader = new RecordReader(base, memoryMapped, 0, size);
+            while (reader.nextLine()) {
+                if (!reader.startsWith(CUSTOMER_PREFIX)) {
+                    continue;
+                }
+                int idStart = reader.lineStart() + CUSTOMER_PREFIX.length;
+                int idEnd = reader.indexOf((byte) ',', idStart, reader.lineEnd());
+                boolean keep = idEnd < 0 || !replaced.contains(reader.string(idStart, idEnd));
+                if (keep && runStart < 0) {
+                    runStart = reader.lineOffset();
+                } else if (!keep && runStart >= 0) {
+                    copy(base, runStart, reader.lineOffset(), writer, out);
+                    runStart = -1;
+                }
+            }
+            if (runStart >= 0) {
+                copy(base, runStart, size, writer, out);
+                ByteBuffer last = ByteBuffer.allocate(1);
+                base.read(last, size - 1);
+                if (last.get(0) != '\n') {
+                    writer.write('\n');
+                }
+            }
+
+            writeCustomerRecords(writer, customers, records);
+            writer.flush();
+            out.force(true);
+        }
+        replace(tempFile, customersFile);
+    }
+
+    private static void copy(FileChannel from, long start, long end, Writer writer, FileChannel to)
+            throws IOException {
+        writer.flush();
+        while (start < end) {
+            start += from.transferTo(start, end - start, to);
+        }
+    }
+
+    /**
+     * Formats a purchase as an id,bookId,bookTitle,quantity,totalPrice,date
+     * line without the newline.
+     */
+    static String formatPurchase(Purchase purchase) {
+        StringBuilder line = new StringBuilder(128)
+                .append(purchase.getId()).append(',')
+                .append(purchase.getBookId()).append(',')
+                .append(purchase.getBookTitle()).append(',')
+                .append(purchase.getQuantity()).append(',');
+        return Money.appendTo(line, purchase.getTotalCents()).append(',')
+                .append(purchase.getDate())
+                .toString();
+    }
+
+    private static Path temporaryFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static FileChannel openTemporaryFile(Path tempFile) throws IOException {
+        return FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    private static Writer newWriter(FileChannel out) {
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(out), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Moves a file written and forced beside its target into place, then
+     * forces the directory so the rename itself survives a power loss. Once
+     * this returns, the journals folded into the file may be deleted.
+     */
+    static void replace(Path tempFile, Path file) throws IOException {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces the entries of a directory, such as files just created or
+     * renamed in it, to the device.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Windows cannot open a directory; there the file system orders the rename itself
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Purchase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads lazy purchase histories from the customer file they were loaded
+ * from and keeps the most recently used ones resident.
+ *
+ * The channel stays open for as long as any history may need it. Saving
+ * replaces the customer file by moving a new one over it, which leaves the
+ * open file readable on Linux and macOS, so the offsets recorded at load
+ * time stay valid; the old file's space is freed when the pager is closed.
+ */
+final class HistoryPager implements Closeable {
+    private final FileChannel channel;
+    private final StringPool stringPool;
+    // Parsed histories by file offset, least recently used first
+    private final Map<Long, List<Purchase>> resident;
+    private long hits;
+    private long pageIns;
+
+    /**
+     * Constructor.
+     *
+     * @param stringPool Pool for the strings of paged-in purchases, or null
+     * @param residentLimit The most histories to keep parsed in memory
+     */
+    HistoryPager(FileChannel channel, StringPool stringPool, int residentLimit) {
+        this.channel = channel;
+        this.stringPool = stringPool;
+        this.resident = new LinkedHashMap<Long, List<Purchase>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<Purchase>> eldest) {
+                return size() > residentLimit;
+            }
+        };
+    }
+
+    /**
+     * Gets the purchases of a history from the file, reading them if they
+     * are not resident.
+     *
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    List<Purchase> purchases(LazyPurchaseHistory history) {
+        Long key = history.getStart();
+        synchronized (this) {
+            List<Purchase> purchases = resident.get(key);
+            if (purchases != null) {
+                hits++;
+                return purchases;
+            }
+        }
+
+        // Read outside the lock so page-ins of different customers overlap
+        List<Purchase> purchases;
+        try {
+            purchases = FileIO.readPurchases(channel, history.getStart(), history.getEnd(), stringPool);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading purchase history: " + e.getMessage(), e);
+        }
+        synchronized (this) {
+            pageIns++;
+            resident.put(key, purchases);
+        }
+        return purchases;
+    }
+
+    synchronized boolean isResident(LazyPurchaseHistory history) {
+        return resident.containsKey(history.getStart());
+    }
+
+    /**
+     * Gets the number of reads served from resident histories.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of histories read from the file.
+     */
+    synchronized long getPageIns() {
+        return pageIns;
+    }
+
+    synchronized int getResidentCount() {
+        return resident.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,177 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The customer file opened for reading one customer at a time through its
+ * CustomerIndex, for a store that does not load every customer up front.
+ * The index is built first if it is missing or was built from an older
+ * version of the file.
+ *
+ * Each instance reads one version of the file, and the offsets in its index
+ * only hold for that version; once the file is rewritten a new instance is
+ * opened. Readers take a hold on an instance while they read it, and the
+ * store holds the current one; the index and file are closed as soon as the
+ * last hold is released. Lazy histories read from the file too, and cannot
+ * be counted, so with them the channel is closed once the pager they share
+ * is no longer reachable.
+ */
+final class IndexedCustomers implements Closeable {
+    private static final Cleaner PAGER_CLEANER = Cleaner.create(runnable -> {
+        Thread thread = new Thread(runnable, "customer-file-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileIO fileIO;
+    private final FileChannel channel;
+    private final CustomerIndex index;
+    private final HistoryPager pager;
+    private final long journalGeneration;
+    // The store's hold, while this is its current version, and one for each read in progress
+    private int holds = 1;
+
+    private IndexedCustomers(FileIO fileIO, FileChannel channel, CustomerIndex index) throws IOException {
+        this.fileIO = fileIO;
+        this.channel = channel;
+        this.index = index;
+        this.pager = fileIO.newHistoryPager(channel);
+        this.journalGeneration = FileIO.readJournalGeneration(channel);
+    }
+
+    /**
+     * Opens the customer file of a FileIO, whose settings are used to parse
+     * the customers read.
+     */
+    static IndexedCustomers open(FileIO fileIO) throws IOException {
+        FileChannel channel = FileChannel.open(fileIO.getCustomersFile(), StandardOpenOption.READ);
+        CustomerIndex index = null;
+        try {
+            index = CustomerIndex.open(fileIO.getCustomerIndexFile(), fileIO.getCustomersFile());
+            if (index == null) {
+                CustomerIndex.build(fileIO.getCustomerIndexFile(), fileIO.getCustomersFile(),
+                        fileIO.isMemoryMapped());
+                index = CustomerIndex.open(fileIO.getCustomerIndexFile(), fileIO.getCustomersFile());
+                if (index == null) {
+                    throw new IOException("Customer index was not usable after being rebuilt");
+                }
+            }
+            return new IndexedCustomers(fileIO, channel, index);
+        } catch (IOException | RuntimeException e) {
+            if (index != null) {
+                index.close();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a customer by username.
+     *
+     * @return The customer, or null if the file has none
+     */
+    Customer findByUsername(String username) throws IOException {
+        return read(index.findUsername(username));
+    }
+
+    /**
+     * Reads a customer by id.
+     *
+     * @return The customer, or null if the file has none
+     */
+    Customer findById(String id) throws IOException {
+        return read(index.findId(id));
+    }
+
+    private Customer read(CustomerIndex.Location location) throws IOException {
+        if (location == null) {
+            return null;
+        }
+        List<Customer> customers = fileIO.readCustomers(channel, location.offset,
+                location.offset + location.length, pager);
+        return customers.isEmpty() ? null : customers.get(0);
+    }
+
+    /**
+     * Reads every customer in the file.
+     */
+    List<Customer> readAll() throws IOException {
+        return fileIO.readCustomers(channel, 0, channel.size(), pager);
+    }
+
+    /**
+     * Gets the channel the file is read through, positioned nowhere in
+     * particular; reads must be positional.
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the last journal generation folded into the file.
+     */
+    long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Gets the number of pages read to find a customer.
+     */
+    int getIndexHeight() {
+        return index.getHeight();
+    }
+
+    /**
+     * Takes a hold on the file, so it stays open until release.
+     *
+     * @return false if it was already closed, and must not be read
+     */
+    synchronized boolean acquire() {
+        if (holds == 0) {
+            return false;
+        }
+        holds++;
+        return true;
+    }
+
+    /**
+     * Releases a hold, closing the index and file if it was the last one.
+     */
+    void release() throws IOException {
+        synchronized (this) {
+            if (holds == 0 || --holds > 0) {
+                return;
+            }
+        }
+        index.close();
+        if (pager == null) {
+            channel.close();
+        } else {
+            FileChannel file = channel;
+            PAGER_CLEANER.register(pager, () -> {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    // Nothing is left to read it
+                }
+            });
+        }
+    }
+
+    /**
+     * Releases the store's hold, once it has moved on to a newer version of
+     * the file or stopped using the index.
+     */
+    @Override
+    public void close() throws IOException {
+        release();
+    }
+}
@@ -0,0 +1,311 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Purchase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only change log for the data store. Each change is written as one
+ * line to data/journal-&lt;generation&gt;.log, a WriteAheadLog, and is durable
+ * once sync returns. On load the journals newer than the generation recorded
+ * in customers.txt are replayed, which recovers every change acknowledged
+ * before a crash; compaction folds them back into the data files. Book
+ * records are only replayed from journals newer than the generation recorded
+ * in books.txt, which may be ahead: STOCK records are relative, so applying
+ * one to a file that already holds it would count it twice.
+ *
+ * Record formats:
+ * <pre>
+ * ADD_BOOK:id,title,author,price,quantity
+ * DELETE_BOOK:id
+ * STOCK:bookId,change
+ * ADD_CUSTOMER:id,username,name,password
+ * DELETE_CUSTOMER:id
+ * ADD_PURCHASE:customerId,id,bookId,bookTitle,quantity,totalPrice,date
+ * REDEEM:customerId,points
+ * PASSWORD:customerId,password
+ * </pre>
+ */
+class Journal implements Closeable {
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+
+    private static final byte[] ADD_BOOK = "ADD_BOOK:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETE_BOOK = "DELETE_BOOK:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STOCK = "STOCK:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADD_CUSTOMER = "ADD_CUSTOMER:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETE_CUSTOMER = "DELETE_CUSTOMER:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADD_PURCHASE = "ADD_PURCHASE:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REDEEM = "REDEEM:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PASSWORD = "PASSWORD:".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path directory;
+    private final boolean groupCommit;
+    private long generation;
+    private WriteAheadLog log;
+
+    /**
+     * Opens a new, empty journal file for the given generation.
+     *
+     * @param groupCommit true to let concurrent writers share each fsync
+     */
+    Journal(Path directory, long generation, boolean groupCommit) throws IOException {
+        this.directory = directory;
+        this.groupCommit = groupCommit;
+        this.generation = generation;
+        this.log = new WriteAheadLog(file(directory, generation), groupCommit);
+        // Without this the new file itself, and every record synced to it, could vanish in a power loss
+        FileIO.syncDirectory(directory);
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of bytes appended to the current generation.
+     */
+    long size() {
+        return log.size();
+    }
+
+    long addBook(Book book) {
+        return log.append("ADD_BOOK:" + FileIO.formatBook(book));
+    }
+
+    long deleteBook(Book book) {
+        return log.append("DELETE_BOOK:" + book.getId());
+    }
+
+    /**
+     * Records a change in a book's stock. Changes are relative so that
+     * concurrent reservations replay correctly in any order.
+     */
+    long changeStock(Book book, int change) {
+        return log.append("STOCK:" + book.getId() + "," + change);
+    }
+
+    long addCustomer(Customer customer) {
+        return log.append("ADD_CUSTOMER:" + customer.getId() + "," + customer.getUsername() + ","
+                + customer.getName() + "," + customer.getPassword());
+    }
+
+    long deleteCustomer(Customer customer) {
+        return log.append("DELETE_CUSTOMER:" + customer.getId());
+    }
+
+    long addPurchase(Customer customer, Purchase purchase) {
+        return log.append("ADD_PURCHASE:" + customer.getId() + "," + FileIO.formatPurchase(purchase));
+    }
+
+    long redeemPoints(Customer customer, int points) {
+        return log.append("REDEEM:" + customer.getId() + "," + points);
+    }
+
+    long changePassword(Customer customer) {
+        return log.append("PASSWORD:" + customer.getId() + "," + customer.getPassword());
+    }
+
+    /**
+     * Waits until the record with the given sequence number is durable.
+     */
+    void sync(long sequence) throws IOException {
+        log.sync(sequence);
+    }
+
+    /**
+     * Closes the current generation and starts the next one.
+     *
+     * @return The generation that was closed
+     */
+    long rotate() throws IOException {
+        log.close();
+        long closed = generation++;
+        log = new WriteAheadLog(file(directory, generation), groupCommit);
+        FileIO.syncDirectory(directory);
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Replays, in order, every journal in the directory newer than the given
+     * generation. Replay of a file stops at the first line whose checksum
+     * does not match, which is where a crash tore the last write.
+     *
+     * @param booksGeneration The generation recorded in the book file, at
+     *        least baseGeneration; book records up to it are skipped
+     * @return The newest generation found, or baseGeneration if there is none
+     */
+    static long replay(Path directory, long baseGeneration, long booksGeneration, DataStore dataStore)
+            throws IOException {
+        long newest = baseGeneration;
+        for (long generation : generations(directory)) {
+            if (generation <= baseGeneration) {
+                continue;
+            }
+            boolean replayBooks = generation > booksGeneration;
+            try (RecordReader reader = new RecordReader(file(directory, generation), false)) {
+                while (reader.nextLine()) {
+                    int end = WriteAheadLog.recordEnd(reader);
+                    if (end < 0) {
+                        break;
+                    }
+                    apply(reader, end, replayBooks, dataStore);
+                }
+            }
+            newest = generation;
+        }
+        return newest;
+    }
+
+    private static void apply(RecordReader reader, int end, boolean replayBooks, DataStore dataStore) {
+        int start = reader.lineStart();
+
+        if (!replayBooks && (reader.startsWith(ADD_BOOK) || reader.startsWith(DELETE_BOOK)
+                || reader.startsWith(STOCK))) {
+            // Already folded into the book file
+            return;
+        }
+
+        if (reader.startsWith(ADD_BOOK)) {
+            Book book = FileIO.parseBook(reader, start + ADD_BOOK.length, end, dataStore.getStringPool());
+            if (book != null) {
+                Book existing = dataStore.findBookById(book.getId());
+                if (existing != null) {
+                    dataStore.removeBook(existing);
+                }
+                dataStore.addBook(book);
+            }
+        } else if (reader.startsWith(DELETE_BOOK)) {
+            Book book = dataStore.findBookById(reader.string(start + DELETE_BOOK.length, end));
+            if (book != null) {
+                dataStore.removeBook(book);
+            }
+        } else if (reader.startsWith(STOCK)) {
+            int from = start + STOCK.length;
+            int changeStart = nthComma(reader, from, end, 1) + 1;
+            Book book = changeStart > 0 ? dataStore.findBookById(reader.string(from, changeStart - 1)) : null;
+            if (book != null) {
+                try {
+                    book.setQuantity(book.getQuantity() + reader.parseInt(changeStart, end));
+                } catch (NumberFormatException e) {
+                    // Malformed change; leave the stock as it is
+                }
+            }
+        } else if (reader.startsWith(ADD_CUSTOMER)) {
+            int from = start + ADD_CUSTOMER.length;
+            int passwordStart = nthComma(reader, from, end, 3) + 1;
+            if (passwordStart > 0) {
+                Customer customer = FileIO.parseCustomer(reader, from, passwordStart - 1);
+                if (customer != null) {
+                    customer.setPassword(reader.string(passwordStart, end));
+                    Customer existing = dataStore.customerById(customer.getId());
+                    if (existing != null) {
+                        dataStore.removeCustomer(existing);
+                    }
+                    dataStore.addCustomer(customer);
+                }
+            }
+        } else if (reader.startsWith(DELETE_CUSTOMER)) {
+            Customer customer = dataStore.customerById(reader.string(start + DELETE_CUSTOMER.length, end));
+            if (customer != null) {
+                dataStore.removeCustomer(customer);
+            }
+        } else if (reader.startsWith(ADD_PURCHASE)) {
+            int from = start + ADD_PURCHASE.length;
+            int purchaseStart = nthComma(reader, from, end, 1) + 1;
+            if (purchaseStart > 0) {
+                Customer customer = dataStore.customerById(reader.string(from, purchaseStart - 1));
+                Purchase purchase = FileIO.parsePurchase(reader, purchaseStart, end, dataStore.getStringPool());
+                if (customer != null && purchase != null) {
+                    customer.addPurchase(purchase);
+                }
+            }
+        } else if (reader.startsWith(REDEEM)) {
+            int from = start + REDEEM.length;
+            int pointsStart = nthComma(reader, from, end, 1) + 1;
+            Customer customer = pointsStart > 0
+                    ? dataStore.customerById(reader.string(from, pointsStart - 1)) : null;
+            if (customer != null) {
+                try {
+                    customer.redeemPoints(reader.parseInt(pointsStart, end));
+                } catch (NumberFormatException e) {
+                    // Malformed redemption; leave the balance as it is
+                }
+            }
+        } else if (reader.startsWith(PASSWORD)) {
+            int from = start + PASSWORD.length;
+            int passwordStart = nthComma(reader, from, end, 1) + 1;
+            Customer customer = passwordStart > 0
+                    ? dataStore.customerById(reader.string(from, passwordStart - 1)) : null;
+            if (customer != null) {
+                customer.setPassword(reader.string(passwordStart, end));
+            }
+        }
+    }
+
+    private static int nthComma(RecordReader reader, int from, int end, int n) {
+        int index = from - 1;
+        for (int i = 0; i < n; i++) {
+            index = reader.indexOf((byte) ',', index + 1, end);
+            if (index < 0) {
+                return -1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Deletes every journal up to and including the given generation. The
+     * data files folding them in must already be durable, as FileIO.replace
+     * leaves them.
+     */
+    static void deleteUpTo(Path directory, long generation) throws IOException {
+        for (long existing : generations(directory)) {
+            if (existing <= generation) {
+                Files.deleteIfExists(file(directory, existing));
+            }
+        }
+    }
+
+    /**
+     * Lists the generations of the journal files in the directory, oldest first.
+     */
+    static List<Long> generations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return generations;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(
+                            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static Path file(Path directory, long generation) {
+        return directory.resolve(FILE_PREFIX + generation + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,79 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Purchase;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A customer's purchase history that stays in the customer file until it
+ * is read. The load only records where the customer's PURCHASE lines are;
+ * the first read parses them, and the pager keeps a bounded number of
+ * parsed histories resident, so reading many customers re-reads evicted
+ * ones from disk instead of holding them all.
+ *
+ * Purchases added after loading are held in memory beside the ones on
+ * disk and never paged out. As with StoredPurchaseHistory, elements read
+ * from the file are not written back, so changes made to them are lost
+ * when the history is paged out.
+ */
+public class LazyPurchaseHistory extends AbstractList<Purchase> {
+    private final HistoryPager pager;
+    private final long start;
+    private final long end;
+    private final int storedCount;
+    private final List<Purchase> added = new ArrayList<>(0);
+
+    /**
+     * Constructor.
+     *
+     * @param start Offset of the first PURCHASE line of the customer
+     * @param end Offset just past the last one
+     * @param storedCount The number of well-formed purchases in that range
+     */
+    LazyPurchaseHistory(HistoryPager pager, long start, long end, int storedCount) {
+        this.pager = pager;
+        this.start = start;
+        this.end = end;
+        this.storedCount = storedCount;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * Checks whether the purchases from the file are currently in memory.
+     */
+    public boolean isResident() {
+        return storedCount == 0 || pager.isResident(this);
+    }
+
+    @Override
+    public Purchase get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        if (index < storedCount) {
+            return pager.purchases(this).get(index);
+        }
+        return added.get(index - storedCount);
+    }
+
+    @Override
+    public int size() {
+        return storedCount + added.size();
+    }
+
+    @Override
+    public boolean add(Purchase purchase) {
+        added.add(purchase);
+        modCount++;
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.bookstore.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets limiting login attempts per key, such as a username or a
+ * client address. Each bucket is a single AtomicLong holding the time at
+ * which it will be full again, so admitting an attempt is one
+ * compare-and-set and takes no lock; a bucket whose time has passed is full.
+ *
+ * Buckets live in striped maps with a bounded number of keys per stripe.
+ * Full buckets are indistinguishable from new ones, so a stripe that
+ * reaches its bound drops them; keys that still do not fit share the
+ * stripe's overflow bucket, which keeps a spray of distinct keys limited
+ * without letting it grow the maps.
+ */
+public class LoginRateLimiter {
+    private static final int STRIPES = 16;
+
+    private static final class Stripe {
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicLong overflow = new AtomicLong();
+        final AtomicLong nextSweep = new AtomicLong();
+    }
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int keysPerStripe;
+    private final long origin = System.nanoTime();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param attemptsPerMinute The rate at which a key's bucket refills
+     * @param burst The attempts a key may make at once with a full bucket
+     * @param maxKeys The most keys tracked with buckets of their own
+     */
+    public LoginRateLimiter(int attemptsPerMinute, int burst, int maxKeys) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, attemptsPerMinute);
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.keysPerStripe = Math.max(1, maxKeys / STRIPES);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Takes a token from a key's bucket.
+     *
+     * @return 0 if the attempt is admitted, or else the nanoseconds until one would be
+     */
+    public long admit(String key) {
+        AtomicLong bucket = bucketFor(key);
+        long now = System.nanoTime() - origin;
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                admitted.increment();
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key) {
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= keysPerStripe) {
+            sweep(stripe);
+            if (stripe.buckets.size() >= keysPerStripe) {
+                return stripe.overflow;
+            }
+        }
+        return stripe.buckets.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    /**
+     * Drops the stripe's full buckets, at most once per refill interval so
+     * that a stripe full of busy keys is not scanned on every attempt.
+     */
+    private void sweep(Stripe stripe) {
+        long now = System.nanoTime() - origin;
+        long nextSweep = stripe.nextSweep.get();
+        if (now - nextSweep < 0 || !stripe.nextSweep.compareAndSet(nextSweep, now + intervalNanos)) {
+            return;
+        }
+        stripe.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * Gets the number of keys with buckets of their own.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "LoginRateLimiter{" +
+                "keys=" + size() +
+                ", admitted=" + getAdmitted() +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.bookstore.util;
+
+/**
+ * Thrown when a login is refused because too many attempts were made for
+ * the same username or from the same client, before the password is checked.
+ */
+public class LoginThrottledException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(long retryAfterSeconds) {
+        super("Too many login attempts, try again in " + retryAfterSeconds + " s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Gets the seconds until another attempt would be admitted.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
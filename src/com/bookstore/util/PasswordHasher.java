@@ -0,0 +1,113 @@
+package com.bookstore.util;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes, stored as
+ * "pbkdf2$iterations$salt$hash" with salt and hash in Base64. A stored
+ * password without the prefix is one saved before passwords were hashed;
+ * it never matches, and DataStore hashes such passwords as it loads them.
+ *
+ * Usage: java com.bookstore.util.PasswordHasher password [iterations]
+ * prints a hash to use for the bookstore.admin.password property.
+ */
+public final class PasswordHasher {
+    /** Iterations of new hashes unless configured otherwise. */
+    public static final int DEFAULT_ITERATIONS = 120_000;
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Hashes a password with a new random salt.
+     */
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    /**
+     * Checks a password against a stored hash, in time independent of where
+     * they differ.
+     *
+     * @return false if they differ or the stored password is not a hash
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || !isHashed(stored)) {
+            return false;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return iterations > 0 && MessageDigest.isEqual(derive(password, salt, iterations), expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if a stored password is a hash rather than plain text.
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Gets the iterations of a stored hash.
+     *
+     * @return The iterations, or 0 if the password is not hashed
+     */
+    public static int iterationsOf(String stored) {
+        if (!isHashed(stored)) {
+            return 0;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end > 0 ? Integer.parseInt(stored.substring(PREFIX.length(), end)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java com.bookstore.util.PasswordHasher password [iterations]");
+            System.exit(1);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        System.out.println(hash(args[0], iterations));
+    }
+}
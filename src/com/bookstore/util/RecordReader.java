@@ -0,0 +1,296 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads newline-terminated records from a file channel as raw bytes.
+ * Each successful call to nextLine exposes the bounds of the current line
+ * within buffer(); nothing is decoded unless a caller asks for a string.
+ *
+ * In mapped mode the file is walked through read-only mappings of
+ * MAP_CHUNK_SIZE bytes instead of being copied into a heap buffer. A line
+ * that straddles the end of a chunk is handled by mapping the next chunk
+ * starting at that line.
+ */
+final class RecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAP_CHUNK_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final boolean mapped;
+    private final long end;
+    private int mapSize;
+    private byte[] scratch;
+    private ByteBuffer buffer;
+    private long bufferOffset;
+    private int position;
+    private int scanFrom;
+    private int limit;
+    private boolean exhausted;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * Opens a reader over the whole file.
+     */
+    RecordReader(Path path, boolean mapped) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), true, mapped, 0, -1);
+    }
+
+    /**
+     * Creates a reader over the bytes [start, end) of a shared channel.
+     * Reads are positional, so several readers may share one channel.
+     */
+    RecordReader(FileChannel channel, boolean mapped, long start, long end) throws IOException {
+        this(channel, false, mapped, start, end);
+    }
+
+    private RecordReader(FileChannel channel, boolean ownsChannel, boolean mapped, long start, long end)
+            throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.mapped = mapped;
+        this.end = end < 0 ? channel.size() : end;
+        // A short range, such as one customer's purchases, needs no full-size buffer
+        this.buffer = mapped ? ByteBuffer.allocate(0)
+                : ByteBuffer.allocate((int) Math.max(16, Math.min(BUFFER_SIZE, this.end - start + 1)));
+        this.bufferOffset = start;
+        this.mapSize = MAP_CHUNK_SIZE;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false when the end of the range has been reached
+     */
+    boolean nextLine() throws IOException {
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    setLine(position, i);
+                    position = i + 1;
+                    scanFrom = position;
+                    return true;
+                }
+            }
+            scanFrom = limit;
+
+            if (exhausted) {
+                if (position < limit) {
+                    setLine(position, limit);
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            if (mapped) {
+                remap();
+            } else {
+                fill();
+            }
+        }
+    }
+
+    private void setLine(int start, int newline) {
+        lineStart = start;
+        lineEnd = newline > start && buffer.get(newline - 1) == '\r' ? newline - 1 : newline;
+    }
+
+    /**
+     * Moves the unread tail of the buffer to the front and reads more bytes
+     * behind it, growing the buffer if a single line does not fit.
+     */
+    private void fill() throws IOException {
+        int pending = limit - position;
+        if (pending == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer.array(), 0, pending);
+            buffer = larger;
+        } else if (position > 0) {
+            System.arraycopy(buffer.array(), position, buffer.array(), 0, pending);
+        }
+        bufferOffset += position;
+        scanFrom -= position;
+        position = 0;
+        limit = pending;
+
+        long readFrom = bufferOffset + limit;
+        int wanted = (int) Math.min(buffer.capacity() - limit, end - readFrom);
+        if (wanted <= 0) {
+            exhausted = true;
+            return;
+        }
+        buffer.limit(limit + wanted).position(limit);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, readFrom + buffer.position() - limit);
+            if (read < 0) {
+                break;
+            }
+        }
+        int total = buffer.position() - limit;
+        limit += total;
+        buffer.clear();
+        if (total < wanted) {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * Maps the next chunk of the file, starting at the unread tail of the
+     * current one so that a partial line is seen whole. The chunk size is
+     * doubled if a single line does not fit.
+     */
+    private void remap() throws IOException {
+        long offset = bufferOffset + position;
+        int pending = limit - position;
+        if (pending == mapSize) {
+            mapSize = (int) Math.min((long) mapSize * 2, Integer.MAX_VALUE);
+        }
+        int size = (int) Math.min(mapSize, end - offset);
+        if (size <= pending) {
+            exhausted = true;
+            return;
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        bufferOffset = offset;
+        scanFrom -= position;
+        position = 0;
+        limit = size;
+        if (offset + size >= end) {
+            exhausted = true;
+        }
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Gets the file offset of the first byte of the current line.
+     */
+    long lineOffset() {
+        return bufferOffset + lineStart;
+    }
+
+    /**
+     * Checks whether the current line starts with the given ASCII prefix.
+     */
+    boolean startsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(lineStart + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next occurrence of a byte in [from, to), or -1.
+     */
+    int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the bytes [from, to) of the buffer as UTF-8.
+     */
+    String string(int from, int to) {
+        int length = to - from;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), from, length, StandardCharsets.UTF_8);
+        }
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(length, 256)];
+        }
+        buffer.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the bytes [from, to) of the buffer as UTF-8, returning the
+     * pool's instance of the value. A null pool decodes a new string.
+     */
+    String string(int from, int to, StringPool pool) {
+        return pool == null ? string(from, to) : pool.intern(buffer, from, to);
+    }
+
+    /**
+     * Parses a signed decimal integer from the bytes [from, to).
+     */
+    int parseInt(int from, int to) {
+        long value = parseLong(from, to);
+        if (value != (int) value) {
+            throw new NumberFormatException("Integer out of range: " + string(from, to));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a signed decimal integer from the bytes [from, to).
+     *
+     * @throws NumberFormatException if the bytes are not a number or it does
+     *         not fit a long, as Long.parseLong would
+     */
+    long parseLong(int from, int to) {
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException("Empty number");
+        }
+        // Accumulated as a negative number, whose range reaches Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + string(from, to));
+            }
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberFormatException("Number out of range: " + string(from, to));
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses a plain decimal amount such as "12.99" from the bytes [from, to)
+     * into cents, with Money.parse.
+     */
+    long parseCents(int from, int to) {
+        return Money.parse(buffer, from, to);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Session;
+
+import java.io.Closeable;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sessions identified by opaque tokens, for front ends such as the HTTP API
+ * where one process serves many users. Looking a session up is one
+ * concurrent map read, and logging in or out touches only the map and a
+ * lock-free queue, so heavy login churn takes no global lock.
+ *
+ * A session expires once it has not been used for the idle timeout. Reads
+ * check this themselves; reclaiming expired sessions is left to a hashed
+ * timer wheel advanced by a daemon thread. Each session sits in the slot of
+ * the tick at which it would expire if it were not used again. Using a
+ * session only records the time, so when its slot comes round a session
+ * that has been used since is put back in the slot of its new deadline
+ * instead of expiring.
+ */
+public class SessionManager implements Closeable {
+    private static final int TOKEN_BYTES = 24;
+    private static final int WHEEL_SLOTS = 512;
+
+    private static final class Entry {
+        final String token;
+        final Session session;
+        volatile long lastUsed;
+        volatile boolean removed;
+
+        Entry(String token, Session session, long now) {
+            this.token = token;
+            this.session = session;
+            this.lastUsed = now;
+        }
+    }
+
+    private final long idleTimeoutNanos;
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry>[] wheel;
+    // Next tick of the wheel to process; only the expiry thread moves it
+    private volatile long cursor;
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService expiry;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * Constructor. Starts the thread that reclaims expired sessions.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SessionManager(long idleTimeout, TimeUnit unit) {
+        this.idleTimeoutNanos = Math.max(1, unit.toNanos(idleTimeout));
+        // Fine enough that a session is reclaimed within about 1/256 of the timeout past it
+        this.tickNanos = Math.min(Math.max(idleTimeoutNanos / 256, TimeUnit.MILLISECONDS.toNanos(1)),
+                TimeUnit.SECONDS.toNanos(1));
+        this.wheel = new ConcurrentLinkedQueue[WHEEL_SLOTS];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiry.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a session under a new token.
+     *
+     * @return The token, which is all a client needs to present to use it
+     */
+    public String open(Session session) {
+        long now = System.nanoTime();
+        byte[] bytes = new byte[TOKEN_BYTES];
+        while (true) {
+            random.nextBytes(bytes);
+            String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            Entry entry = new Entry(token, session, now);
+            if (sessions.putIfAbsent(token, entry) == null) {
+                schedule(entry, now + idleTimeoutNanos);
+                opened.increment();
+                return token;
+            }
+        }
+    }
+
+    /**
+     * Gets the session of a token, counting as a use of it.
+     *
+     * @return The session, or null if the token is unknown or has expired
+     */
+    public Session get(String token) {
+        Entry entry = token != null ? sessions.get(token) : null;
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.lastUsed >= idleTimeoutNanos) {
+            expire(entry);
+            return null;
+        }
+        entry.lastUsed = now;
+        return entry.session;
+    }
+
+    /**
+     * Ends the session of a token, logging its user out.
+     *
+     * @return true if the token had a live session
+     */
+    public boolean close(String token) {
+        Entry entry = token != null ? sessions.remove(token) : null;
+        if (entry == null) {
+            return false;
+        }
+        entry.removed = true;
+        entry.session.setCurrentUser(null);
+        closed.increment();
+        return true;
+    }
+
+    private void expire(Entry entry) {
+        if (sessions.remove(entry.token, entry)) {
+            entry.removed = true;
+            entry.session.setCurrentUser(null);
+            expired.increment();
+        }
+    }
+
+    private long tickOf(long nanos) {
+        return (nanos - origin) / tickNanos;
+    }
+
+    /**
+     * Puts an entry in the slot of the tick at which its deadline falls, or
+     * in the furthest slot if that is more than one turn of the wheel away.
+     */
+    private void schedule(Entry entry, long deadline) {
+        long current = cursor;
+        long tick = Math.min(Math.max(tickOf(deadline), current + 1), current + WHEEL_SLOTS - 1);
+        wheel[(int) (tick % WHEEL_SLOTS)].add(entry);
+    }
+
+    /**
+     * Processes every tick up to the current time, expiring the sessions
+     * found idle and rescheduling those used since they were scheduled.
+     */
+    private void advance() {
+        long now = System.nanoTime();
+        long last = tickOf(now);
+        for (long tick = cursor; tick <= last; tick++) {
+            ConcurrentLinkedQueue<Entry> slot = wheel[(int) (tick % WHEEL_SLOTS)];
+            // Entries rescheduled from this slot go to later ones, so draining it ends
+            cursor = tick;
+            Entry entry;
+            while ((entry = slot.poll()) != null) {
+                if (entry.removed) {
+                    continue;
+                }
+                long deadline = entry.lastUsed + idleTimeoutNanos;
+                if (deadline - now <= 0) {
+                    expire(entry);
+                } else {
+                    schedule(entry, deadline);
+                }
+            }
+        }
+        cursor = last + 1;
+    }
+
+    /**
+     * Gets the number of live sessions, including any expired ones not yet
+     * reclaimed.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    public long getClosed() {
+        return closed.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Stops reclaiming expired sessions. Sessions still expire on use.
+     */
+    @Override
+    public void close() {
+        expiry.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionManager{" +
+                "sessions=" + size() +
+                ", opened=" + getOpened() +
+                ", closed=" + getClosed() +
+                ", expired=" + getExpired() +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package com.bookstore.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Converts books.txt and customers.txt into a binary snapshot.
+ *
+ * Usage: java com.bookstore.util.SnapshotConverter [dataDirectory]
+ */
+public class SnapshotConverter {
+
+    public static void main(String[] args) throws IOException {
+        FileIO fileIO = new FileIO(args.length > 0 ? args[0] : "data");
+        fileIO.setLoadParallelism(Runtime.getRuntime().availableProcessors());
+        convert(fileIO);
+    }
+
+    /**
+     * Loads the text files through the given FileIO and writes them to the
+     * snapshot in the same directory.
+     *
+     * @return The snapshot file
+     */
+    public static Path convert(FileIO fileIO) throws IOException {
+        Path snapshot = fileIO.getDataDirectory().resolve(SnapshotFile.FILE_NAME);
+        SnapshotFile.write(snapshot, fileIO.loadBooks(), fileIO.loadCustomers(), null,
+                fileIO.getJournalGeneration());
+        return snapshot;
+    }
+}
@@ -0,0 +1,288 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Purchase;
+import com.bookstore.model.PurchaseStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary alternative to books.txt and customers.txt.
+ *
+ * Layout, all numbers big-endian:
+ * <pre>
+ * int magic "BKSN", short version, long journalGeneration
+ * int bookCount, then per book:
+ *     id, title, author, long priceCents, int quantity
+ * int customerCount, then per customer:
+ *     id, username, name, password, int points, int purchaseCount, then per purchase:
+ *         id, bookId, bookTitle, int quantity, long totalCents, date
+ * int magic "BKSN"
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8. Ids are a tag byte
+ * followed by either two longs (canonical UUIDs) or a string. Version 1
+ * snapshots have no points, which are then credited from the purchases.
+ */
+public final class SnapshotFile {
+    public static final String FILE_NAME = "store.snapshot";
+
+    private static final int MAGIC = 0x424B534E;
+    private static final short VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte ID_STRING = 0;
+    private static final byte ID_UUID = 1;
+
+    private final List<Book> books;
+    private final List<Customer> customers;
+    private final long journalGeneration;
+
+    private SnapshotFile(List<Book> books, List<Customer> customers, long journalGeneration) {
+        this.books = books;
+        this.customers = customers;
+        this.journalGeneration = journalGeneration;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Gets the last journal generation folded into the snapshot.
+     */
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Writes a snapshot beside the target, forces it to the device and moves
+     * it into place. When given, records supplies the purchases and points
+     * to write for each customer, as in FileIO.writeCustomers.
+     */
+    public static void write(Path file, List<Book> books, List<Customer> customers,
+                             CustomerRecords records, long journalGeneration) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(journalGeneration);
+
+            out.writeInt(books.size());
+            for (Book book : books) {
+                writeId(out, book.getId());
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+                out.writeLong(book.getPriceCents());
+                out.writeInt(book.getQuantity());
+            }
+
+            out.writeInt(customers.size());
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                List<Purchase> purchases = records != null ? records.purchasesOf(i) : customer.getPurchaseHistory();
+
+                writeId(out, customer.getId());
+                writeString(out, customer.getUsername());
+                writeString(out, customer.getName());
+                writeString(out, customer.getPassword());
+                out.writeInt(records != null ? records.pointsOf(i) : customer.getPoints());
+                out.writeInt(purchases.size());
+                for (Purchase purchase : purchases) {
+                    writeId(out, purchase.getId());
+                    writeId(out, purchase.getBookId());
+                    writeString(out, purchase.getBookTitle());
+                    out.writeInt(purchase.getQuantity());
+                    out.writeLong(purchase.getTotalCents());
+                    writeString(out, purchase.getDate());
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        FileIO.replace(tempFile, file);
+    }
+
+    /**
+     * Reads a snapshot written by write.
+     *
+     * @throws IOException if the file is not a complete snapshot of a known version
+     */
+    public static SnapshotFile read(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    /**
+     * Reads a snapshot written by write, keeping the purchases in the given
+     * store unless it is null.
+     *
+     * @throws IOException if the file is not a complete snapshot of a known version
+     */
+    public static SnapshotFile read(Path file, PurchaseStore purchaseStore) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            long journalGeneration = in.readLong();
+            byte[] scratch = new byte[256];
+
+            int bookCount = in.readInt();
+            List<Book> books = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                String id = readId(in, scratch);
+                String title = readString(in, scratch);
+                String author = readString(in, scratch);
+                long priceCents = in.readLong();
+                books.add(new Book(id, title, author, priceCents, in.readInt()));
+            }
+
+            int customerCount = in.readInt();
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                String id = readId(in, scratch);
+                String username = readString(in, scratch);
+                String name = readString(in, scratch);
+                String password = readString(in, scratch);
+                int points = version >= 2 ? in.readInt() : -1;
+                int purchaseCount = in.readInt();
+
+                Customer customer = new Customer(id, username, password, name,
+                        purchaseStore != null ? purchaseStore.newHistory(id) : new ArrayList<>(purchaseCount));
+                for (int p = 0; p < purchaseCount; p++) {
+                    String purchaseId = readId(in, scratch);
+                    String bookId = readId(in, scratch);
+                    String bookTitle = readString(in, scratch);
+                    int quantity = in.readInt();
+                    long totalCents = in.readLong();
+                    customer.addPurchase(new Purchase(purchaseId, bookId, bookTitle, quantity, totalCents,
+                            readString(in, scratch)));
+                }
+                if (points >= 0) {
+                    customer.setPoints(points);
+                }
+                customers.add(customer);
+            }
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is truncated");
+            }
+            return new SnapshotFile(books, customers, journalGeneration);
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    private static void writeId(DataOutputStream out, String id) throws IOException {
+        UUID uuid = parseUuid(id);
+        if (uuid != null) {
+            out.writeByte(ID_UUID);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            out.writeByte(ID_STRING);
+            writeString(out, id);
+        }
+    }
+
+    /**
+     * Parses an id that is a UUID in canonical form, so it can be written
+     * back identically, or returns null.
+     */
+    private static UUID parseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String readId(DataInputStream in, byte[] scratch) throws IOException {
+        byte tag = in.readByte();
+        if (tag == ID_UUID) {
+            return new UUID(in.readLong(), in.readLong()).toString();
+        }
+        if (tag != ID_STRING) {
+            throw new IOException("Bad id tag " + tag);
+        }
+        return readString(in, scratch);
+    }
+
+    /**
+     * Writes a string as a varint length and its UTF-8 bytes. Null is
+     * written as length zero with the high bit of a second byte set.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(0x80);
+            out.writeByte(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, byte[] scratch) throws IOException {
+        int length = readVarint(in);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a varint, returning -1 for the encoding of null.
+     */
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return shift > 0 && b == 0 ? -1 : value;
+            }
+        }
+        throw new IOException("Malformed string length");
+    }
+}
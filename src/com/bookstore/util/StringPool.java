@@ -0,0 +1,228 @@
+package com.bookstore.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of canonical String instances for values repeated across many
+ * records, such as book ids, titles, authors and purchase dates, so that
+ * identical values share one instance.
+ *
+ * ASCII values can be looked up straight from file bytes, which only
+ * creates a String the first time a value is seen. The pool is split into
+ * segments with their own locks, so parallel loaders rarely wait on each
+ * other, and stops adding values once it holds maxEntries; later values are
+ * returned unpooled.
+ */
+public final class StringPool {
+    /** Default bound on the number of pooled values. */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    private static final int SEGMENTS = 16;
+    // Approximate heap cost of a Latin-1 String beyond its characters:
+    // String object plus byte[] header, with compressed pointers
+    private static final int STRING_OVERHEAD = 24 + 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxEntriesPerSegment;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public StringPool() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public StringPool(int maxEntries) {
+        this.maxEntriesPerSegment = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Gets the pooled instance equal to the value, pooling it if it is new.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            String pooled = segment.find(hash, value);
+            if (pooled != null) {
+                return hit(pooled);
+            }
+            segment.add(hash, value, maxEntriesPerSegment);
+        }
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Gets the pooled instance of the UTF-8 bytes [from, to) of the buffer.
+     * ASCII bytes are matched without decoding them.
+     */
+    String intern(ByteBuffer buffer, int from, int to) {
+        // String.hashCode over chars equals this over ASCII bytes
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return intern(decode(buffer, from, to, StandardCharsets.UTF_8));
+            }
+            hash = 31 * hash + b;
+        }
+
+        Segment segment = segmentFor(hash);
+        String value;
+        synchronized (segment) {
+            String pooled = segment.find(hash, buffer, from, to);
+            if (pooled != null) {
+                return hit(pooled);
+            }
+            value = decode(buffer, from, to, StandardCharsets.ISO_8859_1);
+            segment.add(hash, value, maxEntriesPerSegment);
+        }
+        misses.increment();
+        return value;
+    }
+
+    private String hit(String pooled) {
+        hits.increment();
+        bytesSaved.add(STRING_OVERHEAD + ((pooled.length() + 7) & ~7));
+        return pooled;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to, Charset charset) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Gets the number of lookups that found a pooled instance.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that did not.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets an estimate of the heap bytes saved by returning pooled
+     * instances instead of new Strings. Assumes Latin-1 values.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Gets the number of pooled values.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "StringPool{" +
+                "size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", bytesSaved=" + getBytesSaved() +
+                '}';
+    }
+
+    /**
+     * Open-addressing hash set of strings, guarded by its own monitor.
+     */
+    private static final class Segment {
+        private String[] values = new String[64];
+        private int[] hashes = new int[64];
+        private int size;
+
+        String find(int hash, String value) {
+            int mask = values.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && values[i].equals(value)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        String find(int hash, ByteBuffer buffer, int from, int to) {
+            int mask = values.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && matches(values[i], buffer, from, to)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(String value, ByteBuffer buffer, int from, int to) {
+            if (value.length() != to - from) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(int hash, String value, int maxEntries) {
+            if (size >= maxEntries) {
+                return;
+            }
+            if (size * 2 >= values.length) {
+                resize();
+            }
+            insert(hash, value);
+            size++;
+        }
+
+        private void insert(int hash, String value) {
+            int mask = values.length - 1;
+            int i = hash & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            values[i] = value;
+            hashes[i] = hash;
+        }
+
+        private void resize() {
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+            values = new String[oldValues.length * 2];
+            hashes = new int[oldValues.length * 2];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldHashes[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.bookstore.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for work that should not run on a UI or request thread.
+ *
+ * On Java 21 and later tasks run on virtual threads, so blocking I/O in a
+ * task costs no platform thread. The application still runs on earlier
+ * JDKs, where a cached pool of daemon threads is used instead.
+ */
+public final class Threads {
+    private static volatile ExecutorService background;
+
+    private Threads() {
+    }
+
+    /**
+     * Gets the shared executor for background tasks such as loading data
+     * for a view. It never needs shutting down.
+     */
+    public static ExecutorService background() {
+        ExecutorService executor = background;
+        if (executor == null) {
+            synchronized (Threads.class) {
+                executor = background;
+                if (executor == null) {
+                    executor = newTaskExecutor("background");
+                    background = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Creates an executor that starts a thread per task: a virtual thread
+     * where the JDK has them, otherwise a pooled daemon thread named after
+     * the given prefix.
+     */
+    public static ExecutorService newTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
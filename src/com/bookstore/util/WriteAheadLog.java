@@ -0,0 +1,200 @@
+package com.bookstore.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable, line-oriented log file. Each record is written as one line
+ * followed by a tab and the CRC32C of the record, so a line torn by a crash
+ * is detected on recovery.
+ *
+ * Records are buffered by append and made durable by sync. With group
+ * commit, the first thread to sync writes and forces everything appended so
+ * far while later callers wait; whatever they append in the meantime goes
+ * out together in the next force. Without it, every sync forces on its own
+ * even if an earlier force already carried its record.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int INITIAL_BATCH_SIZE = 1 << 12;
+
+    private final FileChannel channel;
+    private final boolean groupCommit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durable = lock.newCondition();
+    private final CRC32C checksum = new CRC32C();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(INITIAL_BATCH_SIZE);
+    private long appendedSequence;
+    private long durableSequence;
+    private long size;
+    private boolean syncing;
+    private IOException failure;
+
+    /**
+     * Opens the log for appending, creating the file if needed.
+     *
+     * @param groupCommit true to share each force among all waiting callers
+     */
+    public WriteAheadLog(Path file, boolean groupCommit) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.groupCommit = groupCommit;
+        this.size = channel.size();
+    }
+
+    /**
+     * Buffers a record. The record must not contain a newline.
+     *
+     * @return The sequence number to pass to sync
+     * @throws IllegalArgumentException if it does
+     */
+    public long append(String record) {
+        if (record.indexOf('\n') >= 0) {
+            // It would split the record, failing its checksum and ending replay there
+            throw new IllegalArgumentException("Record contains a newline");
+        }
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            checksum.reset();
+            checksum.update(bytes, 0, bytes.length);
+            pending.write(bytes, 0, bytes.length);
+            pending.write('\t');
+            writeHex((int) checksum.getValue());
+            pending.write('\n');
+            size += bytes.length + 10;
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeHex(int value) {
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            pending.write(Character.forDigit((value >>> shift) & 0xF, 16));
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number, and every
+     * record before it, has been forced to the device.
+     */
+    public void sync(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (syncing) {
+                    durable.awaitUninterruptibly();
+                    continue;
+                }
+
+                // Become the leader for everything appended so far
+                syncing = true;
+                ByteArrayOutputStream batch = pending;
+                long batchSequence = groupCommit ? appendedSequence : sequence;
+                pending = new ByteArrayOutputStream(Math.max(INITIAL_BATCH_SIZE, batch.size()));
+                IOException error = null;
+                lock.unlock();
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+
+                syncing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = Math.max(durableSequence, batchSequence);
+                }
+                durable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record and waits until it is durable.
+     */
+    public void appendAndSync(String record) throws IOException {
+        sync(append(record));
+    }
+
+    /**
+     * Gets the number of bytes in the log, including buffered records.
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Syncs everything appended so far and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        long last;
+        lock.lock();
+        try {
+            last = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            sync(last);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Checks the checksum of the reader's current line.
+     *
+     * @return The end of the record within the line, or -1 if the line was
+     *         not written completely
+     */
+    static int recordEnd(RecordReader reader) {
+        int start = reader.lineStart();
+        int end = reader.lineEnd();
+        int tab = end - 9;
+        if (tab < start || reader.buffer().get(tab) != '\t') {
+            return -1;
+        }
+
+        int expected = 0;
+        for (int i = tab + 1; i < end; i++) {
+            int digit = Character.digit(reader.buffer().get(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            expected = (expected << 4) | digit;
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(reader.buffer().duplicate().limit(tab).position(start));
+        return (int) crc.getValue() == expected ? tab : -1;
+    }
+}
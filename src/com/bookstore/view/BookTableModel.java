@@ -0,0 +1,221 @@
+package com.bookstore.view;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Money;
+import com.bookstore.util.DataStore;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Table model over the books in the DataStore. Nothing is copied into the
+ * model: each cell is read from the store when the table paints it, so
+ * opening a screen costs the same for ten books or half a million.
+ *
+ * Unsorted and unfiltered, rows are positions in the store's book list.
+ * Sorted or filtered, they are the books themselves, in order. Checkbox
+ * selections are kept by book rather than by position, so they survive
+ * sorting and filtering, and books removed by another session cannot
+ * shift them onto different books.
+ */
+public class BookTableModel extends AbstractTableModel {
+    public static final int TITLE_COLUMN = 0;
+    public static final int PRICE_COLUMN = 1;
+    public static final int SELECT_COLUMN = 2;
+
+    // Most books shown for a search
+    private static final int SEARCH_RESULTS = 1000;
+
+    private final DataStore dataStore;
+    private final boolean selectable;
+    private final Set<Book> selection = Collections.newSetFromMap(new IdentityHashMap<>());
+    private String query;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    // Books shown, in order, or null for every book in store order
+    private Book[] rows;
+
+    /**
+     * Constructor.
+     *
+     * @param selectable Whether the table has a checkbox column for choosing books
+     */
+    public BookTableModel(boolean selectable) {
+        this.dataStore = DataStore.getInstance();
+        this.selectable = selectable;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows != null ? rows.length : dataStore.getBookCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return selectable ? 3 : 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        switch (column) {
+            case TITLE_COLUMN:
+                return "Book Name";
+            case PRICE_COLUMN:
+                return "Book Price";
+            default:
+                return "Select";
+        }
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == SELECT_COLUMN ? Boolean.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return selectable && column == SELECT_COLUMN; // Only checkbox column is editable
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book book = getBookAt(row);
+        if (column == SELECT_COLUMN) {
+            return book != null && selection.contains(book);
+        }
+        if (book == null) {
+            return null;
+        }
+        return column == TITLE_COLUMN ? book.getTitle() : Money.format(book.getPriceCents());
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == SELECT_COLUMN) {
+            Book book = getBookAt(row);
+            if (book == null) {
+                return;
+            }
+            if (Boolean.TRUE.equals(value)) {
+                selection.add(book);
+            } else {
+                selection.remove(book);
+            }
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    /**
+     * Gets the book shown in a row, or null if it has since been removed.
+     */
+    public Book getBookAt(int row) {
+        if (rows == null) {
+            return dataStore.getBookAt(row);
+        }
+        return row >= 0 && row < rows.length && isInStore(rows[row]) ? rows[row] : null;
+    }
+
+    private boolean isInStore(Book book) {
+        return dataStore.findBookById(book.getId()) == book;
+    }
+
+    /**
+     * Gets the checked books still in the store, whether or not the current
+     * filter shows them.
+     */
+    public List<Book> getSelectedBooks() {
+        List<Book> books = new ArrayList<>(selection.size());
+        for (Book book : selection) {
+            if (isInStore(book)) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Shows only the books matching a search, or all books for a blank query.
+     */
+    public void setFilter(String query) {
+        this.query = query == null || query.isBlank() ? null : query;
+        updateRows();
+    }
+
+    /**
+     * Sorts the rows by the title or price column.
+     */
+    public void sortBy(int column, boolean ascending) {
+        this.sortColumn = column == SELECT_COLUMN ? -1 : column;
+        this.ascending = ascending;
+        updateRows();
+    }
+
+    /**
+     * Re-reads the book list after books were added or removed, dropping
+     * the checkbox selections of books no longer in the store.
+     */
+    public void refresh() {
+        selection.removeIf(book -> !isInStore(book));
+        updateRows();
+    }
+
+    /**
+     * Sorts the table when a column header is clicked, reversing the order
+     * on a second click.
+     */
+    public void sortOnHeaderClick(JTable table) {
+        JTableHeader header = table.getTableHeader();
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (column >= 0 && column != SELECT_COLUMN) {
+                    sortBy(column, column != sortColumn || !ascending);
+                }
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the rows from the filter and sort order.
+     */
+    private void updateRows() {
+        Book[] books = null;
+        if (query != null) {
+            // Keep the search ranking, less any book removed since the search
+            books = dataStore.searchBooks(query, SEARCH_RESULTS).stream()
+                    .filter(this::isInStore)
+                    .toArray(Book[]::new);
+        }
+        if (sortColumn >= 0) {
+            if (books == null) {
+                books = dataStore.getBooks().toArray(new Book[0]);
+            }
+            sort(books);
+        }
+        rows = books;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Sorts books by the sort column. The sort is stable, so equal keys
+     * keep their order.
+     */
+    private void sort(Book[] books) {
+        Comparator<Book> comparator = sortColumn == PRICE_COLUMN
+                ? Comparator.comparingLong(Book::getPriceCents)
+                : Comparator.comparing(book -> book.getTitle() != null ? book.getTitle() : "",
+                        String.CASE_INSENSITIVE_ORDER);
+        Arrays.sort(books, ascending ? comparator : comparator.reversed());
+    }
+}
@@ -2,6 +2,7 @@
 package com.bookstore.view;
 
 import com.bookstore.controller.AuthController;
+import com.bookstore.model.Money;
 
 import javax.swing.*;
 import java.awt.*;
@@ -12,20 +13,20 @@ import java.awt.*;
 public class CustomerCostScreen extends JPanel {
     private JFrame parentFrame;
     private AuthController authController;
-    private double totalCost;
+    private long totalCents;
     private int points;
     
     /**
      * Constructor.
      * 
      * @param parentFrame The parent JFrame for navigation
-     * @param totalCost The total cost of the purchase
+     * @param totalCents The total cost of the purchase in cents
      * @param points The updated points after the purchase
      */
-    public CustomerCostScreen(JFrame parentFrame, double totalCost, int points) {
+    public CustomerCostScreen(JFrame parentFrame, long totalCents, int points) {
         this.parentFrame = parentFrame;
         this.authController = new AuthController();
-        this.totalCost = totalCost;
+        this.totalCents = totalCents;
         this.points = points;
         initializeComponents();
     }
@@ -40,7 +41,7 @@ public class CustomerCostScreen extends JPanel {
         JPanel infoPanel = new JPanel(new GridLayout(3, 1, 10, 10));
         infoPanel.setBorder(BorderFactory.createEmptyBorder(50, 50, 50, 50));
         
-        JLabel costLabel = new JLabel("Total Cost: $" + String.format("%.2f", totalCost));
+        JLabel costLabel = new JLabel("Total Cost: $" + Money.format(totalCents));
         costLabel.setFont(new Font("Arial", Font.BOLD, 18));
         costLabel.setHorizontalAlignment(SwingConstants.CENTER);
         
@@ -2,18 +2,20 @@
 package com.bookstore.view;
 
 import com.bookstore.controller.AuthController;
+import com.bookstore.controller.Cart;
+import com.bookstore.controller.CheckoutService;
+import com.bookstore.controller.Receipt;
 import com.bookstore.model.Book;
 import com.bookstore.model.Customer;
-import com.bookstore.model.Purchase;
+import com.bookstore.model.Order;
 import com.bookstore.util.DataStore;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Dashboard for customers.
@@ -21,11 +23,11 @@ import java.util.UUID;
 public class CustomerDashboard extends JPanel {
     private JFrame parentFrame;
     private AuthController authController;
+    private CheckoutService checkoutService;
     private Customer currentCustomer;
-    private DefaultTableModel tableModel;
+    private BookTableModel tableModel;
     private JTable booksTable;
-    private List<Book> availableBooks;
-    private List<Boolean> selectedBooks;
+    private JTextField searchField;
     
     /**
      * Constructor.
@@ -35,6 +37,7 @@ public class CustomerDashboard extends JPanel {
     public CustomerDashboard(JFrame parentFrame) {
         this.parentFrame = parentFrame;
         this.authController = new AuthController();
+        this.checkoutService = new CheckoutService();
         initializeCustomer();
         initializeComponents();
         loadBooksData();
@@ -46,12 +49,7 @@ public class CustomerDashboard extends JPanel {
     private void initializeCustomer() {
         if (authController.getCurrentUser() != null) {
             String username = authController.getCurrentUser().getUsername();
-            for (Customer customer : DataStore.getInstance().getCustomers()) {
-                if (customer.getUsername().equals(username)) {
-                    this.currentCustomer = customer;
-                    break;
-                }
-            }
+            this.currentCustomer = DataStore.getInstance().findCustomerByUsername(username);
         }
     }
     
@@ -75,21 +73,32 @@ public class CustomerDashboard extends JPanel {
         welcomeLabel.setFont(new Font("Arial", Font.BOLD, 14));
         topPanel.add(welcomeLabel);
         
-        // Middle part - Books table with checkboxes
-        String[] columnNames = {"Book Name", "Book Price", "Select"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
+        // Search box, filtering the table as the customer types
+        topPanel.add(new JLabel("Search:"));
+        searchField = new JTextField(20);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
+            }
+            
             @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return columnIndex == 2 ? Boolean.class : String.class;
+            public void removeUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
             }
             
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 2; // Only checkbox column is editable
+            public void changedUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
             }
-        };
+        });
+        topPanel.add(searchField);
+        
+        // Middle part - Books table with checkboxes, read from the data store as it is painted
+        tableModel = new BookTableModel(true);
         
         booksTable = new JTable(tableModel);
+        tableModel.sortOnHeaderClick(booksTable);
         booksTable.getColumnModel().getColumn(0).setPreferredWidth(200);
         booksTable.getColumnModel().getColumn(1).setPreferredWidth(100);
         booksTable.getColumnModel().getColumn(2).setPreferredWidth(50);
@@ -122,16 +131,7 @@ public class CustomerDashboard extends JPanel {
      * Gets the current points for the customer.
      */
     private int getCustomerPoints() {
-        if (currentCustomer == null || currentCustomer.getPurchaseHistory() == null) {
-            return 0;
-        }
-        
-        int totalPoints = 0;
-        for (Purchase purchase : currentCustomer.getPurchaseHistory()) {
-            totalPoints += (int)(purchase.getPrice() * 10); // 10 points per 1 CAD
-        }
-        
-        return totalPoints;
+        return currentCustomer != null ? currentCustomer.getPoints() : 0;
     }
     
     /**
@@ -145,47 +145,17 @@ public class CustomerDashboard extends JPanel {
      * Loads books data from the data store into the table.
      */
     private void loadBooksData() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Get books from data store
-        availableBooks = DataStore.getInstance().getBooks();
-        selectedBooks = new ArrayList<>(availableBooks.size());
-        
-        // Add books to table
-        for (Book book : availableBooks) {
-            tableModel.addRow(new Object[]{book.getTitle(), book.getPrice(), false});
-            selectedBooks.add(false);
-        }
-        
-        // Add listener to update selectedBooks array when checkboxes are changed
-        tableModel.addTableModelListener(e -> {
-            int row = e.getFirstRow();
-            int column = e.getColumn();
-            
-            if (column == 2 && row >= 0 && row < selectedBooks.size()) {
-                Boolean isSelected = (Boolean) tableModel.getValueAt(row, column);
-                selectedBooks.set(row, isSelected);
-            }
-        });
+        tableModel.refresh();
     }
     
     /**
      * Handles the buy or redeem and buy action.
      */
     private void handleBuy(boolean isRedeem) {
-        List<Book> booksToBuy = new ArrayList<>();
-        double totalCost = 0;
-        
-        // Collect selected books
-        for (int i = 0; i < selectedBooks.size(); i++) {
-            if (selectedBooks.get(i) && i < availableBooks.size()) {
-                booksToBuy.add(availableBooks.get(i));
-                totalCost += availableBooks.get(i).getPrice();
-            }
-        }
+        // Collect selected books, including any hidden by the search
+        List<Book> booksToBuy = tableModel.getSelectedBooks();
         
-        if (booksToBuy.isEmpty()) {
+        if (booksToBuy.isEmpty() || currentCustomer == null) {
             JOptionPane.showMessageDialog(this,
                     "Please select at least one book to buy",
                     "Selection Error",
@@ -193,44 +163,33 @@ public class CustomerDashboard extends JPanel {
             return;
         }
         
-        // Process the purchase
-        int currentPoints = getCustomerPoints();
-        double finalCost = totalCost;
-        
-        // Apply points redemption if requested
-        if (isRedeem && currentPoints > 0) {
-            // Calculate how much can be redeemed (1 CAD per 100 points)
-            double redeemAmount = Math.min(currentPoints / 100.0, totalCost);
-            finalCost = Math.max(0, totalCost - redeemAmount);
-            
-            // Clear all points if redemption is applied
-            currentPoints = 0;
+        // Take every selected book out of stock and buy it, or none of them
+        Receipt receipt;
+        try {
+            receipt = checkoutService.checkout(
+                    new Cart(currentCustomer).addAll(booksToBuy).setRedeemPoints(isRedeem));
+        } catch (UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Your purchase could not be saved and was not made",
+                    "Purchase Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
-        
-        // Add points earned from this purchase
-        int pointsEarned = (int) (finalCost * 10);
-        currentPoints += pointsEarned;
-        
-        // Create purchase records
-        if (currentCustomer != null) {
-            for (Book book : booksToBuy) {
-                Purchase purchase = new Purchase();
-                purchase.setId(UUID.randomUUID().toString());
-                purchase.setBookId(book.getId());
-                purchase.setBookTitle(book.getTitle());
-                purchase.setPrice(book.getPrice());
-                purchase.setQuantity(1);
-                purchase.setDate(new Date().toString());
-                
-                currentCustomer.addPurchase(purchase);
-            }
+        if (!receipt.isPlaced()) {
+            JOptionPane.showMessageDialog(this,
+                    receipt.getStatus() == Order.Status.OUT_OF_STOCK
+                            ? "Some of the selected books are out of stock"
+                            : "Your points balance changed, please try again",
+                    "Purchase Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
         
         // Navigate to cost screen
         if (parentFrame != null) {
             parentFrame.getContentPane().removeAll();
             parentFrame.getContentPane().add(
-                new CustomerCostScreen(parentFrame, finalCost, currentPoints)
+                new CustomerCostScreen(parentFrame, receipt.getChargedCents(), receipt.getPoints())
             );
             parentFrame.setTitle("BookStore - Purchase Complete");
             parentFrame.revalidate();
@@ -2,15 +2,16 @@
 package com.bookstore.view;
 
 import com.bookstore.controller.AuthController;
+import com.bookstore.controller.Cart;
+import com.bookstore.controller.CheckoutService;
+import com.bookstore.controller.Receipt;
 import com.bookstore.model.Book;
 import com.bookstore.model.Customer;
-import com.bookstore.model.Purchase;
+import com.bookstore.model.Order;
 import com.bookstore.util.DataStore;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -23,21 +24,32 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 /**
  * JavaFX view for the customer dashboard.
  */
 public class CustomerDashboardView extends BorderPane {
     
+    // Most books shown for a search
+    private static final int SEARCH_RESULTS = 100;
+    
     private Stage primaryStage;
     private AuthController authController;
+    private CheckoutService checkoutService;
     private Customer currentCustomer;
     private TableView<BookSelectionModel> booksTable;
-    private ObservableList<BookSelectionModel> booksData;
+    private TableLoader<BookSelectionModel> booksLoader;
+    private TextField searchField;
+    // Selection state of every book shown so far, kept across searches;
+    // filled by the loader thread
+    private final Map<Book, BookSelectionModel> bookModels =
+            Collections.synchronizedMap(new LinkedHashMap<>());
     
     /**
      * Constructor.
@@ -47,6 +59,7 @@ public class CustomerDashboardView extends BorderPane {
     public CustomerDashboardView(Stage primaryStage) {
         this.primaryStage = primaryStage;
         this.authController = new AuthController();
+        this.checkoutService = new CheckoutService();
         initializeCustomer();
         initializeComponents();
         loadBooksData();
@@ -95,12 +108,7 @@ public class CustomerDashboardView extends BorderPane {
     private void initializeCustomer() {
         if (authController.getCurrentUser() != null) {
             String username = authController.getCurrentUser().getUsername();
-            for (Customer customer : DataStore.getInstance().getCustomers()) {
-                if (customer.getUsername().equals(username)) {
-                    this.currentCustomer = customer;
-                    break;
-                }
-            }
+            this.currentCustomer = DataStore.getInstance().findCustomerByUsername(username);
         }
     }
     
@@ -125,6 +133,13 @@ public class CustomerDashboardView extends BorderPane {
         welcomeLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
         headerBox.getChildren().add(welcomeLabel);
         
+        // Create search box, filtering the table as the customer types
+        searchField = new TextField();
+        searchField.setPromptText("Search by title or author");
+        searchField.textProperty().addListener((observable, oldText, newText) -> loadBooksData());
+        headerBox.setSpacing(10);
+        headerBox.getChildren().add(searchField);
+        
         // Create table
         booksTable = new TableView<>();
         booksTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
@@ -146,6 +161,7 @@ public class CustomerDashboardView extends BorderPane {
         selectColumn.setCellFactory(CheckBoxTableCell.forTableColumn(selectColumn));
         
         booksTable.getColumns().addAll(titleColumn, priceColumn, selectColumn);
+        booksLoader = new TableLoader<>(booksTable, "No books");
         
         // Create buttons
         HBox buttonBox = new HBox();
@@ -174,16 +190,7 @@ public class CustomerDashboardView extends BorderPane {
      * Gets the current points for the customer.
      */
     private int getCustomerPoints() {
-        if (currentCustomer == null || currentCustomer.getPurchaseHistory() == null) {
-            return 0;
-        }
-        
-        int totalPoints = 0;
-        for (Purchase purchase : currentCustomer.getPurchaseHistory()) {
-            totalPoints += (int)(purchase.getPrice() * 10); // 10 points per 1 CAD
-        }
-        
-        return totalPoints;
+        return currentCustomer != null ? currentCustomer.getPoints() : 0;
     }
     
     /**
@@ -194,21 +201,24 @@ public class CustomerDashboardView extends BorderPane {
     }
     
     /**
-     * Loads books data from the data store into the table.
+     * Loads the books matching the search box, or all books if it is empty,
+     * from the data store into the table in the background.
      */
     private void loadBooksData() {
-        // Get books from data store
-        List<Book> books = DataStore.getInstance().getBooks();
-        
-        // Convert to BookSelectionModel list
-        List<BookSelectionModel> bookModels = new ArrayList<>();
-        for (Book book : books) {
-            bookModels.add(new BookSelectionModel(book));
-        }
-        
-        // Set in table
-        booksData = FXCollections.observableArrayList(bookModels);
-        booksTable.setItems(booksData);
+        String query = searchField.getText();
+        booksLoader.load(() -> {
+            // Get books from data store
+            List<Book> books = query == null || query.isBlank()
+                    ? DataStore.getInstance().getBooks()
+                    : DataStore.getInstance().searchBooks(query, SEARCH_RESULTS);
+            
+            // Convert to BookSelectionModel list, keeping earlier selections
+            List<BookSelectionModel> models = new ArrayList<>(books.size());
+            for (Book book : books) {
+                models.add(bookModels.computeIfAbsent(book, BookSelectionModel::new));
+            }
+            return models;
+        });
     }
     
     /**
@@ -216,57 +226,43 @@ public class CustomerDashboardView extends BorderPane {
      */
     private void handleBuy(boolean isRedeem) {
         List<Book> booksToBuy = new ArrayList<>();
-        double totalCost = 0;
         
-        // Collect selected books
-        for (BookSelectionModel model : booksData) {
-            if (model.isSelected()) {
-                booksToBuy.add(model.getBook());
-                totalCost += model.getBook().getPrice();
+        // Collect selected books, including any hidden by the search
+        synchronized (bookModels) {
+            for (BookSelectionModel model : bookModels.values()) {
+                if (model.isSelected()) {
+                    booksToBuy.add(model.getBook());
+                }
             }
         }
         
-        if (booksToBuy.isEmpty()) {
+        if (booksToBuy.isEmpty() || currentCustomer == null) {
             showAlert(Alert.AlertType.ERROR, "Selection Error",
                     "Please select at least one book to buy");
             return;
         }
         
-        // Process the purchase
-        int currentPoints = getCustomerPoints();
-        double finalCost = totalCost;
-        
-        // Apply points redemption if requested
-        if (isRedeem && currentPoints > 0) {
-            // Calculate how much can be redeemed (1 CAD per 100 points)
-            double redeemAmount = Math.min(currentPoints / 100.0, totalCost);
-            finalCost = Math.max(0, totalCost - redeemAmount);
-            
-            // Clear all points if redemption is applied
-            currentPoints = 0;
+        // Take every selected book out of stock and buy it, or none of them
+        Receipt receipt;
+        try {
+            receipt = checkoutService.checkout(
+                    new Cart(currentCustomer).addAll(booksToBuy).setRedeemPoints(isRedeem));
+        } catch (UncheckedIOException e) {
+            showAlert(Alert.AlertType.ERROR, "Purchase Error",
+                    "Your purchase could not be saved and was not made");
+            return;
         }
-        
-        // Add points earned from this purchase
-        int pointsEarned = (int) (finalCost * 10);
-        currentPoints += pointsEarned;
-        
-        // Create purchase records
-        if (currentCustomer != null) {
-            for (Book book : booksToBuy) {
-                Purchase purchase = new Purchase();
-                purchase.setBookId(book.getId());
-                purchase.setBookTitle(book.getTitle());
-                purchase.setQuantity(1);
-                purchase.setPrice(book.getPrice());
-                purchase.setDate(new Date().toString());
-                
-                currentCustomer.addPurchase(purchase);
-            }
+        if (!receipt.isPlaced()) {
+            showAlert(Alert.AlertType.ERROR, "Purchase Error",
+                    receipt.getStatus() == Order.Status.OUT_OF_STOCK
+                            ? "Some of the selected books are out of stock"
+                            : "Your points balance changed, please try again");
+            return;
         }
         
         // Navigate to cost screen
         primaryStage.setScene(new Scene(
-                new CustomerCostView(primaryStage, finalCost, currentPoints),
+                new CustomerCostView(primaryStage, receipt.getChargedCents(), receipt.getPoints()),
                 primaryStage.getWidth(), primaryStage.getHeight()));
         primaryStage.setTitle("BookStore - Purchase Complete");
     }
@@ -3,6 +3,7 @@ package com.bookstore.view;
 
 import com.bookstore.controller.AuthController;
 import com.bookstore.model.User;
+import com.bookstore.util.LoginThrottledException;
 
 import javax.swing.*;
 import java.awt.*;
@@ -88,7 +89,16 @@ public class LoginScreen extends JPanel {
             return;
         }
         
-        boolean loginSuccessful = authController.login(username, password);
+        boolean loginSuccessful;
+        try {
+            loginSuccessful = authController.login(username, password);
+        } catch (LoginThrottledException e) {
+            JOptionPane.showMessageDialog(this,
+                    e.getMessage(),
+                    "Login Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         
         if (loginSuccessful) {
             JOptionPane.showMessageDialog(this,
@@ -3,6 +3,7 @@ package com.bookstore.view;
 
 import com.bookstore.controller.AuthController;
 import com.bookstore.model.User;
+import com.bookstore.util.LoginThrottledException;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -23,6 +24,7 @@ public class LoginView extends VBox {
     private TextField usernameField;
     private PasswordField passwordField;
     private Button loginButton;
+    private Label statusLabel;
     private AuthController authController;
     private Stage primaryStage;
     
@@ -80,8 +82,20 @@ public class LoginView extends VBox {
         // Add event handler for login button
         loginButton.setOnAction(e -> handleLogin());
         
+        // Status line, shown while the data is loading
+        statusLabel = new Label();
+        
         // Add components to the main layout
-        this.getChildren().addAll(titleText, formGrid);
+        this.getChildren().addAll(titleText, formGrid, statusLabel);
+    }
+    
+    /**
+     * Disables logging in while the data store is still loading, since
+     * users cannot be found until it has finished.
+     */
+    public void setLoading(boolean loading) {
+        loginButton.setDisable(loading);
+        statusLabel.setText(loading ? "Loading data..." : "");
     }
     
     /**
@@ -97,7 +111,13 @@ public class LoginView extends VBox {
             return;
         }
         
-        boolean loginSuccessful = authController.login(username, password);
+        boolean loginSuccessful;
+        try {
+            loginSuccessful = authController.login(username, password);
+        } catch (LoginThrottledException e) {
+            showAlert(Alert.AlertType.ERROR, "Login Error", e.getMessage());
+            return;
+        }
         
         if (loginSuccessful) {
             navigateToNextScreen();
@@ -2,22 +2,24 @@
 package com.bookstore.view;
 
 import com.bookstore.model.Book;
+import com.bookstore.model.Money;
 import com.bookstore.util.DataStore;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Screen for managing books in the bookstore.
  */
 public class OwnerBooksScreen extends JPanel {
     private JFrame parentFrame;
-    private DefaultTableModel tableModel;
+    private BookTableModel tableModel;
     private JTable booksTable;
     private JTextField nameField;
     private JTextField priceField;
+    private JTextField searchField;
     
     /**
      * Constructor.
@@ -36,18 +38,39 @@ public class OwnerBooksScreen extends JPanel {
     private void initializeComponents() {
         setLayout(new BorderLayout());
         
-        // Top part - Books table
-        tableModel = new DefaultTableModel(new Object[]{"Book Name", "Book Price"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
-            }
-        };
+        // Top part - Search box and books table, read from the data store as it is painted
+        tableModel = new BookTableModel(false);
         
         booksTable = new JTable(tableModel);
         booksTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        tableModel.sortOnHeaderClick(booksTable);
         JScrollPane tableScrollPane = new JScrollPane(booksTable);
         
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search:"));
+        searchField = new JTextField(20);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchField.getText());
+            }
+        });
+        searchPanel.add(searchField);
+        
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.add(searchPanel, BorderLayout.NORTH);
+        tablePanel.add(tableScrollPane, BorderLayout.CENTER);
+        
         // Middle part - Add book form
         JPanel formPanel = new JPanel(new GridLayout(3, 2, 10, 10));
         formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -81,7 +104,7 @@ public class OwnerBooksScreen extends JPanel {
         buttonPanel.add(backButton);
         
         // Add all parts to the main panel
-        add(tableScrollPane, BorderLayout.NORTH);
+        add(tablePanel, BorderLayout.NORTH);
         add(formPanel, BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
     }
@@ -90,16 +113,7 @@ public class OwnerBooksScreen extends JPanel {
      * Loads books data from the data store into the table.
      */
     private void loadBooksData() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Get books from data store
-        List<Book> books = DataStore.getInstance().getBooks();
-        
-        // Add books to table
-        for (Book book : books) {
-            tableModel.addRow(new Object[]{book.getTitle(), book.getPrice()});
-        }
+        tableModel.refresh();
     }
     
     /**
@@ -117,10 +131,10 @@ public class OwnerBooksScreen extends JPanel {
             return;
         }
         
-        double price;
+        long priceCents;
         try {
-            price = Double.parseDouble(priceText);
-            if (price <= 0) {
+            priceCents = Money.parse(priceText);
+            if (priceCents <= 0) {
                 throw new NumberFormatException();
             }
         } catch (NumberFormatException e) {
@@ -131,30 +145,35 @@ public class OwnerBooksScreen extends JPanel {
             return;
         }
         
+        if (!DataStore.isValidField(name)) {
+            JOptionPane.showMessageDialog(this,
+                    "The name must not contain commas",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
         // Check if book with same name already exists
-        List<Book> books = DataStore.getInstance().getBooks();
-        for (Book book : books) {
-            if (book.getTitle().equalsIgnoreCase(name)) {
-                JOptionPane.showMessageDialog(this,
-                        "A book with this name already exists",
-                        "Input Error",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+        if (DataStore.getInstance().findBookByTitle(name) != null) {
+            JOptionPane.showMessageDialog(this,
+                    "A book with this name already exists",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
         
         // Create and add the new book
         Book newBook = new Book();
         newBook.setTitle(name);
-        newBook.setPrice(price);
+        newBook.setPriceCents(priceCents);
         newBook.setAuthor(""); // Not required as per the specification
         newBook.setQuantity(1); // As per the specification, only one copy is allowed
         
         // Add to data store
-        books.add(newBook);
+        DataStore.getInstance().addBook(newBook);
         
         // Update table
-        tableModel.addRow(new Object[]{name, price});
+        tableModel.refresh();
         
         // Clear input fields
         nameField.setText("");
@@ -180,25 +199,23 @@ public class OwnerBooksScreen extends JPanel {
             return;
         }
         
-        String bookName = (String) tableModel.getValueAt(selectedRow, 0);
+        Book book = tableModel.getBookAt(selectedRow);
+        if (book == null) {
+            tableModel.refresh();
+            return;
+        }
         
         int confirmation = JOptionPane.showConfirmDialog(this,
-                "Are you sure you want to delete the book: " + bookName + "?",
+                "Are you sure you want to delete the book: " + book.getTitle() + "?",
                 "Confirm Deletion",
                 JOptionPane.YES_NO_OPTION);
         
         if (confirmation == JOptionPane.YES_OPTION) {
             // Remove from data store
-            List<Book> books = DataStore.getInstance().getBooks();
-            for (int i = 0; i < books.size(); i++) {
-                if (books.get(i).getTitle().equals(bookName)) {
-                    books.remove(i);
-                    break;
-                }
-            }
+            DataStore.getInstance().removeBook(book);
             
-            // Remove from table
-            tableModel.removeRow(selectedRow);
+            // Update table
+            tableModel.refresh();
             
             JOptionPane.showMessageDialog(this,
                     "Book deleted successfully",
@@ -2,8 +2,8 @@
 package com.bookstore.view;
 
 import com.bookstore.model.Book;
+import com.bookstore.model.Money;
 import com.bookstore.util.DataStore;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -13,20 +13,24 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.util.List;
-
 /**
  * JavaFX view for managing books in the bookstore.
  */
 public class OwnerBooksView extends BorderPane {
     
+    // Most books shown for a search
+    private static final int SEARCH_RESULTS = 100;
+    
     private Stage primaryStage;
     private TableView<Book> booksTable;
     private ObservableList<Book> booksData;
+    private TableLoader<Book> booksLoader;
     private TextField nameField;
     private TextField priceField;
+    private TextField searchField;
     
     /**
      * Constructor.
@@ -45,6 +49,11 @@ public class OwnerBooksView extends BorderPane {
     private void initializeComponents() {
         this.setPadding(new Insets(20));
         
+        // Create search box, filtering the table as the owner types
+        searchField = new TextField();
+        searchField.setPromptText("Search by title or author");
+        searchField.textProperty().addListener((observable, oldText, newText) -> loadBooksData());
+        
         // Create table
         booksTable = new TableView<>();
         booksTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
@@ -58,6 +67,8 @@ public class OwnerBooksView extends BorderPane {
         priceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
         
         booksTable.getColumns().addAll(titleColumn, priceColumn);
+        booksLoader = new TableLoader<>(booksTable, "No books");
+        booksData = booksLoader.getItems();
         
         // Create form for adding books
         GridPane formGrid = new GridPane();
@@ -95,21 +106,21 @@ public class OwnerBooksView extends BorderPane {
         buttonBox.getChildren().addAll(deleteButton, backButton);
         
         // Add components to the border pane
-        this.setTop(booksTable);
+        VBox tableBox = new VBox(10, searchField, booksTable);
+        this.setTop(tableBox);
         this.setCenter(formGrid);
         this.setBottom(buttonBox);
     }
     
     /**
-     * Loads books data from the data store into the table.
+     * Loads the books matching the search box, or all books if it is empty,
+     * from the data store into the table in the background.
      */
     private void loadBooksData() {
-        // Get books from data store
-        List<Book> books = DataStore.getInstance().getBooks();
-        
-        // Convert to observable list and set in table
-        booksData = FXCollections.observableArrayList(books);
-        booksTable.setItems(booksData);
+        String query = searchField.getText();
+        booksLoader.load(() -> query == null || query.isBlank()
+                ? DataStore.getInstance().getBooks()
+                : DataStore.getInstance().searchBooks(query, SEARCH_RESULTS));
     }
     
     /**
@@ -125,10 +136,10 @@ public class OwnerBooksView extends BorderPane {
             return;
         }
         
-        double price;
+        long priceCents;
         try {
-            price = Double.parseDouble(priceText);
-            if (price <= 0) {
+            priceCents = Money.parse(priceText);
+            if (priceCents <= 0) {
                 throw new NumberFormatException();
             }
         } catch (NumberFormatException e) {
@@ -137,24 +148,28 @@ public class OwnerBooksView extends BorderPane {
             return;
         }
         
+        if (!DataStore.isValidField(name)) {
+            showAlert(Alert.AlertType.ERROR, "Input Error", 
+                    "The name must not contain commas");
+            return;
+        }
+        
         // Check if book with same name already exists
-        for (Book book : booksData) {
-            if (book.getTitle().equalsIgnoreCase(name)) {
-                showAlert(Alert.AlertType.ERROR, "Input Error", 
-                        "A book with this name already exists");
-                return;
-            }
+        if (DataStore.getInstance().findBookByTitle(name) != null) {
+            showAlert(Alert.AlertType.ERROR, "Input Error", 
+                    "A book with this name already exists");
+            return;
         }
         
         // Create and add the new book
         Book newBook = new Book();
         newBook.setTitle(name);
-        newBook.setPrice(price);
+        newBook.setPriceCents(priceCents);
         newBook.setAuthor(""); // Not required as per the specification
         newBook.setQuantity(1); // As per the specification, only one copy is allowed
         
         // Add to data store
-        DataStore.getInstance().getBooks().add(newBook);
+        DataStore.getInstance().addBook(newBook);
         
         // Add to table
         booksData.add(newBook);
@@ -188,7 +203,7 @@ public class OwnerBooksView extends BorderPane {
         confirmation.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 // Remove from data store
-                DataStore.getInstance().getBooks().remove(selectedBook);
+                DataStore.getInstance().removeBook(selectedBook);
                 
                 // Remove from table
                 booksData.remove(selectedBook);
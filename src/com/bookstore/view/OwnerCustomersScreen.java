@@ -14,6 +14,9 @@ import java.util.List;
  * Screen for managing customers in the bookstore.
  */
 public class OwnerCustomersScreen extends JPanel {
+    // Shown in place of passwords, which are stored hashed
+    private static final String PASSWORD_MASK = "********";
+    
     private JFrame parentFrame;
     private DefaultTableModel tableModel;
     private JTable customersTable;
@@ -100,16 +103,15 @@ public class OwnerCustomersScreen extends JPanel {
         // Add customers to table
         for (Customer customer : customers) {
             int points = calculateTotalPoints(customer);
-            tableModel.addRow(new Object[]{customer.getUsername(), customer.getPassword(), points});
+            tableModel.addRow(new Object[]{customer.getUsername(), PASSWORD_MASK, points});
         }
     }
     
     /**
-     * Calculates the total points for a customer based on their purchase history.
+     * Gets the points balance of a customer from their ledger.
      */
     private int calculateTotalPoints(Customer customer) {
-        // For simplicity, we'll just return the count of purchases for now
-        return customer.getPurchaseHistory() != null ? customer.getPurchaseHistory().size() * 100 : 0;
+        return customer.getPoints();
     }
     
     /**
@@ -127,16 +129,21 @@ public class OwnerCustomersScreen extends JPanel {
             return;
         }
         
+        if (!DataStore.isValidField(username)) {
+            JOptionPane.showMessageDialog(this,
+                    "The username must not contain commas",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
         // Check if customer with same username already exists
-        List<Customer> customers = DataStore.getInstance().getCustomers();
-        for (Customer customer : customers) {
-            if (customer.getUsername().equals(username)) {
-                JOptionPane.showMessageDialog(this,
-                        "A customer with this username already exists",
-                        "Input Error",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+        if (DataStore.getInstance().findCustomerByUsername(username) != null) {
+            JOptionPane.showMessageDialog(this,
+                    "A customer with this username already exists",
+                    "Input Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
         }
         
         // Create and add the new customer
@@ -147,10 +154,10 @@ public class OwnerCustomersScreen extends JPanel {
         newCustomer.setPurchaseHistory(new ArrayList<>());
         
         // Add to data store
-        customers.add(newCustomer);
+        DataStore.getInstance().addCustomer(newCustomer);
         
         // Update table
-        tableModel.addRow(new Object[]{username, password, 0});
+        tableModel.addRow(new Object[]{username, PASSWORD_MASK, 0});
         
         // Clear input fields
         usernameField.setText("");
@@ -185,12 +192,10 @@ public class OwnerCustomersScreen extends JPanel {
         
         if (confirmation == JOptionPane.YES_OPTION) {
             // Remove from data store
-            List<Customer> customers = DataStore.getInstance().getCustomers();
-            for (int i = 0; i < customers.size(); i++) {
-                if (customers.get(i).getUsername().equals(username)) {
-                    customers.remove(i);
-                    break;
-                }
+            DataStore dataStore = DataStore.getInstance();
+            Customer customer = dataStore.findCustomerByUsername(username);
+            if (customer != null) {
+                dataStore.removeCustomer(customer);
             }
             
             // Remove from table
@@ -5,7 +5,6 @@ import com.bookstore.model.Customer;
 import com.bookstore.util.DataStore;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -17,16 +16,18 @@ import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * JavaFX view for managing customers in the bookstore.
  */
 public class OwnerCustomersView extends BorderPane {
+    // Shown in place of passwords, which are stored hashed
+    private static final String PASSWORD_MASK = "********";
     
     private Stage primaryStage;
     private TableView<Customer> customersTable;
     private ObservableList<Customer> customersData;
+    private TableLoader<Customer> customersLoader;
     private TextField usernameField;
     private TextField passwordField;
     
@@ -59,7 +60,7 @@ public class OwnerCustomersView extends BorderPane {
         // Create password column
         TableColumn<Customer, String> passwordColumn = new TableColumn<>("Password");
         passwordColumn.setCellValueFactory(cellData -> 
-                new SimpleStringProperty(cellData.getValue().getPassword()));
+                new SimpleStringProperty(PASSWORD_MASK));
         
         // Create points column
         TableColumn<Customer, Number> pointsColumn = new TableColumn<>("Points");
@@ -67,6 +68,8 @@ public class OwnerCustomersView extends BorderPane {
                 new SimpleIntegerProperty(calculateTotalPoints(cellData.getValue())));
         
         customersTable.getColumns().addAll(usernameColumn, passwordColumn, pointsColumn);
+        customersLoader = new TableLoader<>(customersTable, "No customers");
+        customersData = customersLoader.getItems();
         
         // Create form for adding customers
         GridPane formGrid = new GridPane();
@@ -110,23 +113,18 @@ public class OwnerCustomersView extends BorderPane {
     }
     
     /**
-     * Loads customers data from the data store into the table.
+     * Loads customers data from the data store into the table in the
+     * background.
      */
     private void loadCustomersData() {
-        // Get customers from data store
-        List<Customer> customers = DataStore.getInstance().getCustomers();
-        
-        // Convert to observable list and set in table
-        customersData = FXCollections.observableArrayList(customers);
-        customersTable.setItems(customersData);
+        customersLoader.load(() -> DataStore.getInstance().getCustomers());
     }
     
     /**
-     * Calculates the total points for a customer based on their purchase history.
+     * Gets the points balance of a customer from their ledger.
      */
     private int calculateTotalPoints(Customer customer) {
-        // For simplicity, we'll just return the count of purchases for now
-        return customer.getPurchaseHistory() != null ? customer.getPurchaseHistory().size() * 100 : 0;
+        return customer.getPoints();
     }
     
     /**
@@ -142,13 +140,17 @@ public class OwnerCustomersView extends BorderPane {
             return;
         }
         
+        if (!DataStore.isValidField(username)) {
+            showAlert(Alert.AlertType.ERROR, "Input Error", 
+                    "The username must not contain commas");
+            return;
+        }
+        
         // Check if customer with same username already exists
-        for (Customer customer : customersData) {
-            if (customer.getUsername().equals(username)) {
-                showAlert(Alert.AlertType.ERROR, "Input Error", 
-                        "A customer with this username already exists");
-                return;
-            }
+        if (DataStore.getInstance().findCustomerByUsername(username) != null) {
+            showAlert(Alert.AlertType.ERROR, "Input Error", 
+                    "A customer with this username already exists");
+            return;
         }
         
         // Create and add the new customer
@@ -159,7 +161,7 @@ public class OwnerCustomersView extends BorderPane {
         newCustomer.setPurchaseHistory(new ArrayList<>());
         
         // Add to data store
-        DataStore.getInstance().getCustomers().add(newCustomer);
+        DataStore.getInstance().addCustomer(newCustomer);
         
         // Add to table
         customersData.add(newCustomer);
@@ -193,7 +195,7 @@ public class OwnerCustomersView extends BorderPane {
         confirmation.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 // Remove from data store
-                DataStore.getInstance().getCustomers().remove(selectedCustomer);
+                DataStore.getInstance().removeCustomer(selectedCustomer);
                 
                 // Remove from table
                 customersData.remove(selectedCustomer);
@@ -0,0 +1,81 @@
+package com.bookstore.view;
+
+import com.bookstore.util.Threads;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableView;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Fills a TableView from a background thread. The table shows a loading
+ * placeholder straight away; the rows are prepared off the FX Application
+ * Thread and added in batches, so the view stays responsive while a large
+ * table fills. Starting a new load abandons one still in progress.
+ */
+final class TableLoader<T> {
+    private static final int BATCH_SIZE = 1000;
+
+    private final TableView<T> table;
+    private final String emptyText;
+    private final ObservableList<T> items = FXCollections.observableArrayList();
+    // Incremented by each load; batches of older loads are dropped
+    private long generation;
+
+    /**
+     * Constructor.
+     *
+     * @param emptyText The placeholder shown once a load finds no rows
+     */
+    TableLoader(TableView<T> table, String emptyText) {
+        this.table = table;
+        this.emptyText = emptyText;
+        table.setItems(items);
+    }
+
+    /**
+     * Gets the rows loaded so far. Only touch them on the FX thread.
+     */
+    ObservableList<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Clears the table and loads rows from a source called on a background
+     * thread. Must be called on the FX thread.
+     */
+    void load(Callable<List<T>> source) {
+        long load = ++generation;
+        items.clear();
+        table.setPlaceholder(new Label("Loading..."));
+
+        Threads.background().execute(() -> {
+            List<T> rows;
+            try {
+                rows = source.call();
+            } catch (Exception e) {
+                System.err.println("Error loading table: " + e.getMessage());
+                Platform.runLater(() -> finish(load));
+                return;
+            }
+            for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+                List<T> batch = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+                Platform.runLater(() -> {
+                    if (load == generation) {
+                        items.addAll(batch);
+                    }
+                });
+            }
+            Platform.runLater(() -> finish(load));
+        });
+    }
+
+    private void finish(long load) {
+        if (load == generation) {
+            table.setPlaceholder(new Label(emptyText));
+        }
+    }
+}
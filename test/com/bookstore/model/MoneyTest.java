@@ -0,0 +1,118 @@
+package com.bookstore.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Parses and formats amounts with Money.
+ */
+public class MoneyTest {
+    private static void assertRejected(String text) {
+        try {
+            Money.parse(text);
+            fail("Parsed \"" + text + "\"");
+        } catch (NumberFormatException expected) {
+            // Not an amount
+        }
+    }
+
+    @Test
+    public void parsesPlainDecimals() {
+        assertEquals(1299, Money.parse("12.99"));
+        assertEquals(1290, Money.parse("12.9"));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1200, Money.parse("12."));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(0, Money.parse("0"));
+        assertEquals(0, Money.parse("-0.00"));
+        assertEquals(-300, Money.parse("-3"));
+        assertEquals(-1299, Money.parse("-12.99"));
+        assertEquals(1, Money.parse("000000000000000000000000.01"));
+    }
+
+    @Test
+    public void roundsHalfAwayFromZero() {
+        assertEquals(1300, Money.parse("12.995"));
+        assertEquals(1299, Money.parse("12.994"));
+        assertEquals(1299, Money.parse("12.9949999"));
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(0, Money.parse("0.004"));
+        assertEquals(-1, Money.parse("-0.005"));
+        assertEquals(-1300, Money.parse("-12.995"));
+        assertEquals(100, Money.parse("0.999"));
+    }
+
+    @Test
+    public void rejectsWhatIsNotAPlainDecimal() {
+        for (String text : new String[] {"", "-", ".", "-.", "1.2.3", "+1", "1e3", " 1", "1 ", "1,50", "--1",
+                "1-", "NaN", "Infinity", "0x10", "\u0661"}) {
+            assertRejected(text);
+        }
+    }
+
+    @Test
+    public void parsesLargestAmounts() {
+        String largest = (Money.MAX_UNITS * 10 + 9) + ".995";
+        long cents = (Money.MAX_UNITS * 10 + 9) * 100 + 100;
+
+        assertEquals(cents, Money.parse(largest));
+        assertEquals(-cents, Money.parse("-" + largest));
+    }
+
+    @Test
+    public void rejectsAmountsThatOverflow() {
+        assertRejected((Money.MAX_UNITS + 1) + "0");
+        assertRejected("-" + (Money.MAX_UNITS + 1) + "0.00");
+        assertRejected(Long.toString(Long.MAX_VALUE));
+        assertRejected("99999999999999999999999999");
+    }
+
+    @Test
+    public void parsesRangeOfBuffer() {
+        ByteBuffer bytes = ByteBuffer.wrap("PRICE:12.50,3".getBytes(StandardCharsets.US_ASCII));
+        bytes.position(2);
+
+        assertEquals(1250, Money.parse(bytes, 6, 11));
+        assertEquals(300, Money.parse(bytes, 12, 13));
+        assertEquals(2, bytes.position());
+        try {
+            Money.parse(bytes, 6, 6);
+            fail("Parsed an empty range");
+        } catch (NumberFormatException expected) {
+            // No digits
+        }
+    }
+
+    @Test
+    public void formatsTwoDecimalPlaces() {
+        assertEquals("12.99", Money.format(1299));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.50", Money.format(50));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-12.99", Money.format(-1299));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("Total: 1.10", Money.appendTo(new StringBuilder("Total: "), 110).toString());
+    }
+
+    @Test
+    public void formattedAmountsParseBack() {
+        for (long cents : new long[] {0, 1, -1, 99, 100, 1299, -1299, 123456789, -987654321012L}) {
+            assertEquals(cents, Money.parse(Money.format(cents)));
+        }
+    }
+
+    @Test
+    public void convertsDoubles() {
+        assertEquals(1299, Money.fromDouble(12.99));
+        assertEquals(30, Money.fromDouble(0.1 + 0.2));
+        assertEquals(-1299, Money.fromDouble(-12.99));
+        assertEquals(12.99, Money.toDouble(1299), 0);
+    }
+}
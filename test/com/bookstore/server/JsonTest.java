@@ -0,0 +1,126 @@
+package com.bookstore.server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes JSON with Json and parses it back.
+ */
+public class JsonTest {
+    private static void assertRejected(String text) {
+        try {
+            Json.parseObject(text);
+            fail("Parsed " + text);
+        } catch (IllegalArgumentException expected) {
+            // Not a JSON object
+        }
+    }
+
+    private static String nested(int arrays) {
+        StringBuilder text = new StringBuilder("{\"a\":");
+        for (int i = 0; i < arrays; i++) {
+            text.append('[');
+        }
+        for (int i = 0; i < arrays; i++) {
+            text.append(']');
+        }
+        return text.append('}').toString();
+    }
+
+    @Test
+    public void writesNestedValues() {
+        Json json = new Json().beginObject()
+                .field("name", "Dune")
+                .field("quantity", 3)
+                .field("available", true)
+                .name("price").money(-5)
+                .name("tags").beginArray().value("a").value((String) null).beginObject().endObject().endArray()
+                .name("empty").beginArray().endArray()
+                .endObject();
+
+        assertEquals("{\"name\":\"Dune\",\"quantity\":3,\"available\":true,\"price\":-0.05,"
+                + "\"tags\":[\"a\",null,{}],\"empty\":[]}", json.toString());
+    }
+
+    @Test
+    public void escapesStrings() {
+        String value = "quote \" backslash \\ newline \n return \r tab \t bell \u0007";
+
+        String text = new Json().beginObject().field("s", value).endObject().toString();
+
+        assertEquals("{\"s\":\"quote \\\" backslash \\\\ newline \\n return \\r tab \\t bell \\u0007\"}", text);
+        assertEquals(value, Json.parseObject(text).get("s"));
+    }
+
+    @Test
+    public void parsesEveryKindOfValue() {
+        Map<String, Object> object = Json.parseObject(
+                " { \"s\" : \"x\\/y\\u00e9\" , \"n\": -12.50, \"e\": 1e3, \"t\": true, \"f\": false, \"z\": null,"
+                        + " \"a\": [1, \"two\", [ ], {\"b\": {}}] }\n");
+
+        assertEquals(Arrays.asList("s", "n", "e", "t", "f", "z", "a"), Arrays.asList(object.keySet().toArray()));
+        assertEquals("x/y\u00e9", object.get("s"));
+        // Numbers are kept as their text
+        assertEquals("-12.50", object.get("n"));
+        assertEquals("1e3", object.get("e"));
+        assertEquals(Boolean.TRUE, object.get("t"));
+        assertEquals(Boolean.FALSE, object.get("f"));
+        assertTrue(object.containsKey("z"));
+        assertNull(object.get("z"));
+
+        List<?> array = (List<?>) object.get("a");
+        assertEquals(4, array.size());
+        assertEquals("1", array.get(0));
+        assertEquals("two", array.get(1));
+        assertEquals(Collections.emptyList(), array.get(2));
+        assertEquals(Collections.singletonMap("b", Collections.emptyMap()), array.get(3));
+    }
+
+    @Test
+    public void parsesWhatItWrites() {
+        String text = new Json().beginObject()
+                .field("username", "user,\"1\"")
+                .name("items").beginArray()
+                .beginObject().field("bookId", "b1").field("quantity", 2).endObject()
+                .beginObject().field("bookId", "b2").field("quantity", 1).endObject()
+                .endArray()
+                .name("total").money(3897)
+                .endObject().toString();
+
+        Map<String, Object> object = Json.parseObject(text);
+
+        assertEquals("user,\"1\"", object.get("username"));
+        assertEquals("38.97", object.get("total"));
+        List<?> items = (List<?>) object.get("items");
+        assertEquals(2, items.size());
+        assertEquals("b2", ((Map<?, ?>) items.get(1)).get("bookId"));
+        assertEquals("1", ((Map<?, ?>) items.get(1)).get("quantity"));
+    }
+
+    @Test
+    public void rejectsMalformedObjects() {
+        for (String text : new String[] {"", "   ", "[]", "\"s\"", "1", "{", "{\"a\"", "{\"a\":", "{\"a\":1",
+                "{\"a\" 1}", "{\"a\":1,}", "{a:1}", "{\"a\":1} x", "{\"a\":1}}", "{\"a\":[1,]}", "{\"a\":[1}",
+                "{\"a\":\"unterminated}", "{\"a\":\"\\u12\"}", "{\"a\":\"\\uzzzz\"}", "{\"a\":}", "{\"a\":@}"}) {
+            assertRejected(text);
+        }
+    }
+
+    @Test
+    public void limitsNesting() {
+        // The outer object and 31 arrays make 32 levels
+        assertEquals(1, Json.parseObject(nested(31)).size());
+
+        assertRejected(nested(32));
+        assertRejected(nested(100000));
+    }
+}
@@ -0,0 +1,166 @@
+package com.bookstore.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds CustomerIndex over generated customer files and looks customers up.
+ */
+public class CustomerIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path customersFile;
+    private Path indexFile;
+
+    @Before
+    public void setUp() {
+        customersFile = folder.getRoot().toPath().resolve("customers.txt");
+        indexFile = folder.getRoot().toPath().resolve(CustomerIndex.FILE_NAME);
+    }
+
+    private void writeCustomers(int count) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("CUSTOMER:c").append(i).append(",user").append(i).append(",Name ").append(i).append('\n');
+            text.append("PASSWORD:pbkdf2$1$AAAA$AAAA\n");
+            // Records of different lengths
+            for (int p = 0; p < i % 3; p++) {
+                text.append("PURCHASE:p").append(i).append('-').append(p).append(",b1,Title,1,12.99,2024-03-15\n");
+            }
+            text.append('\n');
+        }
+        Files.write(customersFile, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String record(CustomerIndex.Location location) throws IOException {
+        byte[] bytes = new byte[location.length];
+        try (RandomAccessFile file = new RandomAccessFile(customersFile.toFile(), "r")) {
+            file.seek(location.offset);
+            file.readFully(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void assertFindsEveryCustomer(int count) throws IOException {
+        try (CustomerIndex index = CustomerIndex.open(indexFile, customersFile)) {
+            assertNotNull(index);
+            assertEquals(2L * count, index.size());
+            for (int i = 0; i < count; i++) {
+                CustomerIndex.Location byUsername = index.findUsername("user" + i);
+                CustomerIndex.Location byId = index.findId("c" + i);
+                assertNotNull("user" + i, byUsername);
+                assertNotNull("c" + i, byId);
+                assertEquals(byUsername.offset, byId.offset);
+                assertEquals(byUsername.length, byId.length);
+
+                String record = record(byUsername);
+                assertTrue(record, record.startsWith("CUSTOMER:c" + i + ",user" + i + ","));
+                assertEquals(i % 3, record.split("PURCHASE:", -1).length - 1);
+            }
+        }
+    }
+
+    @Test
+    public void findsCustomersInSingleLeaf() throws IOException {
+        writeCustomers(5);
+        CustomerIndex.build(indexFile, customersFile, false);
+
+        assertFindsEveryCustomer(5);
+        try (CustomerIndex index = CustomerIndex.open(indexFile, customersFile)) {
+            assertEquals(1, index.getHeight());
+        }
+    }
+
+    @Test
+    public void findsCustomersThroughBranchPages() throws IOException {
+        writeCustomers(5000);
+        CustomerIndex.build(indexFile, customersFile, true);
+
+        assertFindsEveryCustomer(5000);
+        try (CustomerIndex index = CustomerIndex.open(indexFile, customersFile)) {
+            assertTrue(index.getHeight() > 1);
+        }
+    }
+
+    @Test
+    public void missingKeysAreNotFound() throws IOException {
+        writeCustomers(500);
+        CustomerIndex.build(indexFile, customersFile, false);
+
+        try (CustomerIndex index = CustomerIndex.open(indexFile, customersFile)) {
+            assertNull(index.findUsername("nobody"));
+            assertNull(index.findUsername(""));
+            // Before the first and after the last key
+            assertNull(index.findUsername("user"));
+            assertNull(index.findUsername("user999"));
+            assertNull(index.findId("user1"));
+            assertNull(index.findUsername("c1"));
+        }
+    }
+
+    @Test
+    public void indexesEmptyCustomerFile() throws IOException {
+        writeCustomers(0);
+        CustomerIndex.build(indexFile, customersFile, false);
+
+        try (CustomerIndex index = CustomerIndex.open(indexFile, customersFile)) {
+            assertNotNull(index);
+            assertEquals(0, index.size());
+            assertNull(index.findUsername("user0"));
+        }
+    }
+
+    @Test
+    public void missingIndexIsNotOpened() throws IOException {
+        writeCustomers(1);
+
+        assertNull(CustomerIndex.open(indexFile, customersFile));
+    }
+
+    @Test
+    public void indexOfChangedCustomerFileIsStale() throws IOException {
+        writeCustomers(10);
+        CustomerIndex.build(indexFile, customersFile, false);
+        FileTime modified = Files.getLastModifiedTime(customersFile);
+
+        Files.write(customersFile, "CUSTOMER:c10,user10,Name 10\n\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(customersFile, modified);
+        assertNull(CustomerIndex.open(indexFile, customersFile));
+
+        writeCustomers(10);
+        Files.setLastModifiedTime(customersFile, FileTime.fromMillis(modified.toMillis() + 2000));
+        assertNull(CustomerIndex.open(indexFile, customersFile));
+    }
+
+    @Test
+    public void damagedIndexIsNotOpened() throws IOException {
+        writeCustomers(10);
+        CustomerIndex.build(indexFile, customersFile, false);
+        byte[] bytes = Files.readAllBytes(indexFile);
+
+        Files.write(indexFile, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(CustomerIndex.open(indexFile, customersFile));
+
+        bytes[0] ^= 1;
+        Files.write(indexFile, bytes);
+        assertNull(CustomerIndex.open(indexFile, customersFile));
+    }
+}
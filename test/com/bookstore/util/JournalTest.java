@@ -0,0 +1,166 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Purchase;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Replays journals written by Journal into an empty DataStore.
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private DataStore store;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath();
+        store = DataStore.getInstance();
+        store.setBooks(new ArrayList<>());
+        store.setCustomers(new ArrayList<>());
+    }
+
+    private static Book book(String id, int quantity) {
+        return new Book(id, "Title " + id, "Author", 1299, quantity);
+    }
+
+    private static Customer customer(String id) {
+        return new Customer(id, "user-" + id, "pbkdf2$1$AAAA$AAAA", "Name " + id, null);
+    }
+
+    private static Purchase purchase(String id, String bookId) {
+        return new Purchase(id, bookId, "Title " + bookId, 1, 1299, "2024-03-15");
+    }
+
+    @Test
+    public void replaysEveryRecordType() throws IOException {
+        Book kept = book("b1", 5);
+        Book deleted = book("b2", 1);
+        Customer customer = customer("c1");
+        Customer removed = customer("c2");
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.addBook(kept);
+            journal.addBook(deleted);
+            journal.changeStock(kept, -2);
+            journal.deleteBook(deleted);
+            journal.addCustomer(customer);
+            journal.addCustomer(removed);
+            journal.addPurchase(customer, purchase("p1", "b1"));
+            journal.redeemPoints(customer, 100);
+            customer.setPassword("pbkdf2$1$BBBB$BBBB");
+            journal.changePassword(customer);
+            journal.sync(journal.deleteCustomer(removed));
+        }
+
+        assertEquals(1, Journal.replay(directory, 0, 0, store));
+
+        assertEquals(1, store.getBooks().size());
+        assertEquals(3, store.findBookById("b1").getQuantity());
+        assertNull(store.findBookById("b2"));
+        assertEquals(1, store.getCustomers().size());
+        Customer replayed = store.findCustomerById("c1");
+        assertNotNull(replayed);
+        assertEquals(1, replayed.getPurchaseHistory().size());
+        assertEquals(Customer.pointsFor(1299) - 100, replayed.getPoints());
+        assertEquals("pbkdf2$1$BBBB$BBBB", replayed.getPassword());
+        assertNull(store.findCustomerById("c2"));
+    }
+
+    @Test
+    public void stopsAtTornLastRecord() throws IOException {
+        Book book = book("b1", 5);
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.addBook(book);
+            journal.sync(journal.changeStock(book, -1));
+        }
+        // A crash in the middle of writing the next record
+        Files.write(directory.resolve("journal-1.log"), "STOCK:b1,-".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        Journal.replay(directory, 0, 0, store);
+
+        assertEquals(4, store.findBookById("b1").getQuantity());
+    }
+
+    @Test
+    public void stopsAtRecordWithBadChecksum() throws IOException {
+        Book book = book("b1", 5);
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.addBook(book);
+            journal.changeStock(book, -1);
+            journal.sync(journal.changeStock(book, -1));
+        }
+        Path file = directory.resolve("journal-1.log");
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Files.write(file, text.replaceFirst("STOCK:b1,-1", "STOCK:b1,-9").getBytes(StandardCharsets.UTF_8));
+
+        Journal.replay(directory, 0, 0, store);
+
+        // Neither the damaged record nor anything after it is applied
+        assertEquals(5, store.findBookById("b1").getQuantity());
+    }
+
+    @Test
+    public void skipsGenerationsAlreadyInTheDataFiles() throws IOException {
+        store.setBooks(new ArrayList<>(Arrays.asList(book("b1", 5))));
+        Customer customer = customer("c1");
+        store.setCustomers(new ArrayList<>(Arrays.asList(customer)));
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.sync(journal.changeStock(book("b1", 0), -1));
+            journal.rotate();
+            journal.sync(journal.addPurchase(customer, purchase("p1", "b1")));
+        }
+
+        assertEquals(2, Journal.replay(directory, 1, 1, store));
+
+        assertEquals(5, store.findBookById("b1").getQuantity());
+        assertEquals(1, customer.getPurchaseHistory().size());
+    }
+
+    @Test
+    public void skipsBookRecordsTheBookFileIsAheadOf() throws IOException {
+        store.setBooks(new ArrayList<>(Arrays.asList(book("b1", 4))));
+        Customer customer = customer("c1");
+        store.setCustomers(new ArrayList<>(Arrays.asList(customer)));
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.changeStock(book("b1", 0), -1);
+            journal.sync(journal.addPurchase(customer, purchase("p1", "b1")));
+        }
+
+        // books.txt was replaced with generation 1 folded in, customers.txt was not
+        Journal.replay(directory, 0, 1, store);
+
+        assertEquals(4, store.findBookById("b1").getQuantity());
+        assertEquals(1, customer.getPurchaseHistory().size());
+    }
+
+    @Test
+    public void deletesJournalsUpToGeneration() throws IOException {
+        try (Journal journal = new Journal(directory, 1, false)) {
+            journal.rotate();
+            journal.rotate();
+        }
+
+        Journal.deleteUpTo(directory, 2);
+
+        assertEquals(Arrays.asList(3L), Journal.generations(directory));
+    }
+}
@@ -0,0 +1,102 @@
+package com.bookstore.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Admits login attempts through LoginRateLimiter. The rates are slow enough
+ * that no bucket refills during a test unless the test waits for it.
+ */
+public class LoginRateLimiterTest {
+    @Test
+    public void admitsBurstThenRejects() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.admit("johndoe"));
+        }
+        long wait = limiter.admit("johndoe");
+
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.MINUTES.toNanos(1));
+        assertEquals(3, limiter.getAdmitted());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void limitsKeysSeparately() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 1, 100);
+
+        assertEquals(0, limiter.admit("johndoe"));
+        assertTrue(limiter.admit("johndoe") > 0);
+        assertEquals(0, limiter.admit("janedoe"));
+        assertEquals(0, limiter.admit("10.0.0.1"));
+        assertEquals(3, limiter.size());
+    }
+
+    @Test
+    public void refillsOverTime() throws InterruptedException {
+        // One attempt every millisecond
+        LoginRateLimiter limiter = new LoginRateLimiter(60000, 1, 100);
+
+        assertEquals(0, limiter.admit("johndoe"));
+        long wait = limiter.admit("johndoe");
+        assertTrue(wait > 0);
+
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(0, limiter.admit("johndoe"));
+    }
+
+    @Test
+    public void boundsTrackedKeys() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 1, 32);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.admit("user" + i);
+        }
+
+        assertTrue(limiter.size() <= 32);
+        // Each of the 16 stripes admits its own 2 keys and one overflow attempt
+        assertTrue(limiter.getAdmitted() <= 32 + 16);
+        assertEquals(1000, limiter.getAdmitted() + limiter.getRejected());
+    }
+
+    @Test
+    public void admitsBurstOnceUnderContention() throws Exception {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 10, 100);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        limiter.admit("johndoe");
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(10, limiter.getAdmitted());
+        assertEquals(threads * 100 - 10, limiter.getRejected());
+    }
+}
@@ -0,0 +1,155 @@
+package com.bookstore.util;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Purchase;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes snapshots with SnapshotFile and reads them back.
+ */
+public class SnapshotFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve(SnapshotFile.FILE_NAME);
+    }
+
+    private static List<Book> books() {
+        return Arrays.asList(
+                new Book("0f8fad5b-d9cb-469f-a165-70867728950e", "Caf\u00e9 Stories", "Author, A.", 1299, 4),
+                new Book("b2", "", "Author", 0, 0));
+    }
+
+    private static Customer customer() {
+        Customer customer = new Customer("7c9e6679-7425-40de-944b-e07fc1f90ae7", "johndoe",
+                "pbkdf2$1$AAAA$AAAA", "John Doe", null);
+        customer.addPurchase(new Purchase("p1", "0f8fad5b-d9cb-469f-a165-70867728950e", "Caf\u00e9 Stories",
+                2, 2598, "2024-03-15"));
+        customer.setPoints(7);
+        return customer;
+    }
+
+    private static void assertBook(Book expected, Book actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getPriceCents(), actual.getPriceCents());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+    }
+
+    @Test
+    public void roundTripsBooksAndCustomers() throws IOException {
+        List<Book> books = books();
+        Customer customer = customer();
+
+        SnapshotFile.write(file, books, Collections.singletonList(customer), null, 12);
+        SnapshotFile snapshot = SnapshotFile.read(file);
+
+        assertEquals(12, snapshot.getJournalGeneration());
+        assertEquals(2, snapshot.getBooks().size());
+        assertBook(books.get(0), snapshot.getBooks().get(0));
+        assertBook(books.get(1), snapshot.getBooks().get(1));
+
+        assertEquals(1, snapshot.getCustomers().size());
+        Customer read = snapshot.getCustomers().get(0);
+        assertEquals(customer.getId(), read.getId());
+        assertEquals("johndoe", read.getUsername());
+        assertEquals("John Doe", read.getName());
+        assertEquals("pbkdf2$1$AAAA$AAAA", read.getPassword());
+        assertEquals(7, read.getPoints());
+        assertEquals(1, read.getPurchaseHistory().size());
+        Purchase purchase = read.getPurchaseHistory().get(0);
+        assertEquals("p1", purchase.getId());
+        assertEquals("0f8fad5b-d9cb-469f-a165-70867728950e", purchase.getBookId());
+        assertEquals("Caf\u00e9 Stories", purchase.getBookTitle());
+        assertEquals(2, purchase.getQuantity());
+        assertEquals(2598, purchase.getTotalCents());
+        assertEquals("2024-03-15", purchase.getDate());
+    }
+
+    @Test
+    public void writesWhatTheRecordsSupply() throws IOException {
+        Customer customer = customer();
+        CustomerRecords records = new CustomerRecords() {
+            @Override
+            public List<Purchase> purchasesOf(int index) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public int pointsOf(int index) {
+                return 42;
+            }
+        };
+
+        SnapshotFile.write(file, new ArrayList<>(), Collections.singletonList(customer), records, 1);
+        Customer read = SnapshotFile.read(file).getCustomers().get(0);
+
+        assertEquals(0, read.getPurchaseHistory().size());
+        assertEquals(42, read.getPoints());
+    }
+
+    @Test
+    public void replacesTheFileWithoutLeavingTheTemporaryCopy() throws IOException {
+        SnapshotFile.write(file, books(), new ArrayList<>(), null, 1);
+        SnapshotFile.write(file, new ArrayList<>(), new ArrayList<>(), null, 2);
+
+        SnapshotFile snapshot = SnapshotFile.read(file);
+        assertEquals(2, snapshot.getJournalGeneration());
+        assertEquals(0, snapshot.getBooks().size());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshot() throws IOException {
+        SnapshotFile.write(file, books(), Collections.singletonList(customer()), null, 1);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Cut at various points, including just before the trailing magic
+        for (int length : new int[] {0, 3, 14, bytes.length / 2, bytes.length - 4, bytes.length - 1}) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            try {
+                SnapshotFile.read(file);
+                fail("Read a snapshot cut to " + length + " bytes");
+            } catch (IOException expected) {
+                // Incomplete
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileThatIsNotASnapshot() throws IOException {
+        Files.write(file, "BOOK:b1,Title,Author,12.99,3\n".getBytes(StandardCharsets.UTF_8));
+        SnapshotFile.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownVersion() throws IOException {
+        SnapshotFile.write(file, new ArrayList<>(), new ArrayList<>(), null, 1);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[4] = 0x7F;
+        Files.write(file, bytes);
+        SnapshotFile.read(file);
+    }
+}
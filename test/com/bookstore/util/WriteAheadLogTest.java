@@ -0,0 +1,154 @@
+package com.bookstore.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes records through WriteAheadLog and reads them back with RecordReader.
+ */
+public class WriteAheadLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads back the records of a log whose checksums match, stopping at the
+     * first that does not, as Journal.replay does.
+     */
+    private static List<String> records(Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(file, false)) {
+            while (reader.nextLine()) {
+                int end = WriteAheadLog.recordEnd(reader);
+                if (end < 0) {
+                    break;
+                }
+                records.add(reader.string(reader.lineStart(), end));
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void recordsRoundTrip() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("log");
+        List<String> written = Arrays.asList("ADD_BOOK:b1,Title,Author,12.99,3", "", "caf\u00e9, with commas",
+                "tab\tinside");
+        try (WriteAheadLog log = new WriteAheadLog(file, true)) {
+            for (String record : written) {
+                log.append(record);
+            }
+        }
+
+        assertEquals(written, records(file));
+    }
+
+    @Test
+    public void appendsOnlyReachTheFileOnSync() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("log");
+        try (WriteAheadLog log = new WriteAheadLog(file, false)) {
+            long first = log.append("one");
+            log.append("two");
+            assertEquals(0, Files.size(file));
+            assertEquals(2 * 13, log.size());
+
+            log.sync(first);
+            assertEquals(log.size(), Files.size(file));
+        }
+    }
+
+    @Test
+    public void reopenedLogAppendsAfterExistingRecords() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("log");
+        try (WriteAheadLog log = new WriteAheadLog(file, true)) {
+            log.appendAndSync("one");
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, true)) {
+            assertEquals(Files.size(file), log.size());
+            log.appendAndSync("two");
+        }
+
+        assertEquals(Arrays.asList("one", "two"), records(file));
+    }
+
+    @Test
+    public void concurrentSyncsKeepEveryRecord() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("log");
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (WriteAheadLog log = new WriteAheadLog(file, true)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.appendAndSync("record " + thread + "/" + i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<String> records = records(file);
+        assertEquals(threads * perThread, records.size());
+        Set<String> distinct = new HashSet<>(records);
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(distinct.contains("record " + t + "/" + i));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRecordWithNewline() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(folder.getRoot().toPath().resolve("log"), true)) {
+            log.append("first line\nsecond line");
+        }
+    }
+
+    @Test
+    public void failedSyncKeepsFailing() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("log");
+        WriteAheadLog log = new WriteAheadLog(file, true);
+        Field channel = WriteAheadLog.class.getDeclaredField("channel");
+        channel.setAccessible(true);
+        ((FileChannel) channel.get(log)).close();
+
+        try {
+            log.appendAndSync("lost");
+            fail("Sync to a closed file succeeded");
+        } catch (IOException expected) {
+            // The write failed
+        }
+        try {
+            log.appendAndSync("after");
+            fail("Sync after a failure succeeded");
+        } catch (IOException expected) {
+            // Later records are not reported durable either
+        }
+    }
+}